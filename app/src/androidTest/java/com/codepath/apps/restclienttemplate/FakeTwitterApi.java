@@ -0,0 +1,405 @@
+package com.codepath.apps.restclienttemplate;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * A local stand-in for the Twitter API, so paging and caching can be measured reproducibly and
+ * without a network. It serves a synthetic home timeline of numTweets tweets by NUM_USERS authors
+ * (every PHOTO_EVERY-th tweet has a photo), and handles statuses/home_timeline, statuses/update,
+ * statuses/retweet/:id, statuses/unretweet/:id, favorites/create, favorites/destroy,
+ * account/verify_credentials and users/lookup the way TwitterClient uses them, including max_id,
+ * since_id and trim_user. The photos and profile images the tweets link to are served too.
+ *
+ * Every API response can be slowed down by a latency before its headers and a bandwidth limit on
+ * its body, fail with a 503 at a given rate, and counts against a per endpoint rate limit that is
+ * reported in x-rate-limit headers like Twitter's. Errors are drawn from a seeded Random, so a run
+ * can be repeated exactly.
+ *
+ * Point TwitterClient at baseUrl() with TwitterClient.overrideBaseUrl() once the server is started.
+ */
+public class FakeTwitterApi {
+
+    private static final int NUM_USERS = 50;
+    private static final int PHOTO_EVERY = 4;
+    private static final long NEWEST_ID = 1500000000000000000L;
+    private static final long FIRST_USER_ID = 1000;
+    // the logged in user, who also writes the tweets posted with statuses/update
+    private static final long CURRENT_USER_ID = 999;
+    private static final long TWEET_INTERVAL_MS = 3 * 60 * 1000;
+    private static final long RATE_LIMIT_WINDOW_MS = 15 * 60 * 1000;
+    private static final int PHOTO_WIDTH = 1200;
+    private static final int PHOTO_HEIGHT = 800;
+    private static final int PROFILE_IMAGE_SIZE = 48;
+    private static final String[] SENTENCES = {
+            "Shipped a new build of the timeline today.",
+            "Scrolling through a few hundred tweets should never drop a frame.",
+            "Reading up on how RecyclerView prefetches rows between frames.",
+            "Coffee first, then code review.",
+            "Thanks to everyone who sent feedback on the last release!",
+    };
+
+    private static class RateLimit {
+        int remaining;
+        long resetAt;
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final int numTweets;
+    private final Random random;
+    private final long startedAt = System.currentTimeMillis();
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.US);
+    private final byte[] photo;
+    private final byte[] profileImage;
+
+    private long latencyMs;
+    private long bytesPerSecond;
+    private double errorRate;
+    private int rateLimit = 900;
+
+    private final Map<String, RateLimit> rateLimits = new HashMap<>();
+    // tweets posted with statuses/update, oldest first; their IDs follow NEWEST_ID
+    private final List<String> posted = new ArrayList<>();
+    private final Set<Long> retweeted = new HashSet<>();
+    private final Set<Long> favorited = new HashSet<>();
+    private int requestCount;
+
+    public FakeTwitterApi(int numTweets, long seed) {
+        this.numTweets = numTweets;
+        this.random = new Random(seed);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        photo = image(PHOTO_WIDTH, PHOTO_HEIGHT, Bitmap.CompressFormat.JPEG);
+        profileImage = image(PROFILE_IMAGE_SIZE, PROFILE_IMAGE_SIZE, Bitmap.CompressFormat.PNG);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return FakeTwitterApi.this.dispatch(request);
+            }
+        });
+    }
+
+    // time before each API response's headers are sent
+    public synchronized void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    // 0 for no limit
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    // fraction of API requests answered with a 503
+    public synchronized void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    // requests allowed per endpoint in each 15 minute window
+    public synchronized void setRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    // what TwitterClient.REST_URL is replaced with
+    public String baseUrl() {
+        String url = server.url("/1.1").toString();
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    // API requests received so far, including failed and rate limited ones
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    private synchronized MockResponse dispatch(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        String path = url.encodedPath();
+        if (path.startsWith("/media/")) {
+            return new MockResponse().setHeader("Content-Type", "image/jpeg").setBody(new Buffer().write(photo));
+        }
+        if (path.startsWith("/profile/")) {
+            return new MockResponse().setHeader("Content-Type", "image/png").setBody(new Buffer().write(profileImage));
+        }
+        if (!path.startsWith("/1.1/") || !path.endsWith(".json")) {
+            return new MockResponse().setResponseCode(404);
+        }
+        requestCount++;
+        // e.g. "statuses/retweet/123.json" counts against "statuses/retweet"
+        String resource = path.substring("/1.1/".length(), path.length() - ".json".length());
+        String endpoint = resource.replaceAll("/\\d+$", "");
+
+        MockResponse response;
+        RateLimit limit = rateLimit(endpoint);
+        if (limit.remaining == 0) {
+            response = error(429, 88, "Rate limit exceeded");
+        } else {
+            limit.remaining--;
+            if (random.nextDouble() < errorRate) {
+                response = error(503, 130, "Over capacity");
+            } else {
+                try {
+                    response = respond(endpoint, resource, request);
+                } catch (JSONException e) {
+                    response = error(500, 131, e.getMessage());
+                }
+            }
+        }
+        response.setHeader("x-rate-limit-limit", String.valueOf(rateLimit))
+                .setHeader("x-rate-limit-remaining", String.valueOf(limit.remaining))
+                .setHeader("x-rate-limit-reset", String.valueOf(limit.resetAt / 1000))
+                .setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS);
+        if (bytesPerSecond > 0) {
+            // in 10 steps per second, so small responses aren't held back for a whole second
+            response.throttleBody(Math.max(bytesPerSecond / 10, 1), 100, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private MockResponse respond(String endpoint, String resource, RecordedRequest request) throws JSONException {
+        Map<String, String> params = params(request);
+        switch (endpoint) {
+            case "statuses/home_timeline":
+                return homeTimeline(params);
+            case "statuses/update":
+                posted.add(params.containsKey("status") ? params.get("status") : "");
+                return json(tweet(NEWEST_ID + posted.size(), false));
+            case "statuses/retweet":
+            case "statuses/unretweet": {
+                long id = Long.parseLong(resource.substring(resource.lastIndexOf('/') + 1));
+                if (endpoint.equals("statuses/retweet")) {
+                    retweeted.add(id);
+                } else {
+                    retweeted.remove(id);
+                }
+                return json(tweet(id, false));
+            }
+            case "favorites/create":
+            case "favorites/destroy": {
+                long id = Long.parseLong(params.get("id"));
+                if (endpoint.equals("favorites/create")) {
+                    favorited.add(id);
+                } else {
+                    favorited.remove(id);
+                }
+                return json(tweet(id, false));
+            }
+            case "account/verify_credentials":
+                return json(user(CURRENT_USER_ID));
+            case "users/lookup": {
+                JSONArray users = new JSONArray();
+                for (String id : params.get("user_id").split(",")) {
+                    users.put(user(Long.parseLong(id)));
+                }
+                return json(users);
+            }
+            default:
+                return error(404, 34, "Sorry, that page does not exist");
+        }
+    }
+
+    // the newest count tweets with IDs at most max_id and greater than since_id, newest first
+    private MockResponse homeTimeline(Map<String, String> params) throws JSONException {
+        int count = params.containsKey("count") ? Integer.parseInt(params.get("count")) : 20;
+        long maxId = params.containsKey("max_id") ? Long.parseLong(params.get("max_id")) : Long.MAX_VALUE;
+        long sinceId = params.containsKey("since_id") ? Long.parseLong(params.get("since_id")) : 0;
+        boolean trimUser = "true".equals(params.get("trim_user"));
+
+        JSONArray page = new JSONArray();
+        long id = Math.min(maxId, NEWEST_ID + posted.size());
+        long oldestId = NEWEST_ID - numTweets + 1;
+        while (page.length() < count && id > sinceId && id >= oldestId) {
+            page.put(tweet(id, trimUser));
+            id--;
+        }
+        return json(page);
+    }
+
+    private JSONObject tweet(long id, boolean trimUser) throws JSONException {
+        // tweets in the corpus are numbered from the newest one down, posted tweets are above it
+        long index = NEWEST_ID - id;
+        boolean isPosted = id > NEWEST_ID;
+        long userId = isPosted ? CURRENT_USER_ID : FIRST_USER_ID + index % NUM_USERS;
+
+        JSONObject tweet = new JSONObject();
+        tweet.put("id", id);
+        tweet.put("id_str", String.valueOf(id));
+        tweet.put("created_at", dateFormat.format(new Date(startedAt - index * TWEET_INTERVAL_MS)));
+        tweet.put("full_text", isPosted ? posted.get((int) (id - NEWEST_ID - 1)) : text(index));
+        tweet.put("truncated", false);
+        tweet.put("lang", "en");
+        tweet.put("retweet_count", (isPosted ? 0 : index * 7 % 300) + (retweeted.contains(id) ? 1 : 0));
+        tweet.put("favorite_count", (isPosted ? 0 : index * 31 % 2000) + (favorited.contains(id) ? 1 : 0));
+        tweet.put("retweeted", retweeted.contains(id));
+        tweet.put("favorited", favorited.contains(id));
+        if (trimUser) {
+            JSONObject user = new JSONObject();
+            user.put("id", userId);
+            user.put("id_str", String.valueOf(userId));
+            tweet.put("user", user);
+        } else {
+            tweet.put("user", user(userId));
+        }
+
+        JSONObject entities = new JSONObject();
+        entities.put("hashtags", new JSONArray());
+        entities.put("user_mentions", new JSONArray());
+        entities.put("urls", new JSONArray());
+        if (!isPosted && index % PHOTO_EVERY == 0) {
+            JSONArray media = new JSONArray();
+            media.put(photo(id));
+            entities.put("media", media);
+            JSONObject extendedEntities = new JSONObject();
+            extendedEntities.put("media", media);
+            tweet.put("extended_entities", extendedEntities);
+        }
+        tweet.put("entities", entities);
+        return tweet;
+    }
+
+    private JSONObject photo(long id) throws JSONException {
+        JSONObject sizes = new JSONObject();
+        sizes.put("thumb", size(150, 150));
+        sizes.put("small", size(680, 680 * PHOTO_HEIGHT / PHOTO_WIDTH));
+        sizes.put("medium", size(PHOTO_WIDTH, PHOTO_HEIGHT));
+        sizes.put("large", size(PHOTO_WIDTH, PHOTO_HEIGHT));
+        JSONObject photo = new JSONObject();
+        photo.put("id", id);
+        photo.put("type", "photo");
+        photo.put("media_url_https", server.url("/media/" + id + ".jpg").toString());
+        photo.put("sizes", sizes);
+        return photo;
+    }
+
+    private static JSONObject size(int width, int height) throws JSONException {
+        JSONObject size = new JSONObject();
+        size.put("w", width);
+        size.put("h", height);
+        size.put("resize", "fit");
+        return size;
+    }
+
+    private JSONObject user(long id) throws JSONException {
+        JSONObject user = new JSONObject();
+        user.put("id", id);
+        user.put("id_str", String.valueOf(id));
+        user.put("name", id == CURRENT_USER_ID ? "Harness User" : "Author " + id);
+        user.put("screen_name", id == CURRENT_USER_ID ? "harness" : "author" + id);
+        user.put("description", "A synthetic account served by FakeTwitterApi.");
+        user.put("followers_count", id * 13 % 10000);
+        user.put("friends_count", id * 7 % 1000);
+        user.put("statuses_count", id * 101 % 50000);
+        user.put("verified", false);
+        user.put("profile_image_url_https", server.url("/profile/" + id + ".png").toString());
+        return user;
+    }
+
+    // one to five sentences, so rows have different heights
+    private static String text(long index) {
+        StringBuilder text = new StringBuilder("#" + index + " ");
+        for (int i = 0; i <= index % SENTENCES.length; i++) {
+            text.append(SENTENCES[(int) ((index + i) % SENTENCES.length)]).append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    private RateLimit rateLimit(String endpoint) {
+        long now = System.currentTimeMillis();
+        RateLimit limit = rateLimits.get(endpoint);
+        if (limit == null || now >= limit.resetAt) {
+            limit = new RateLimit();
+            limit.remaining = rateLimit;
+            limit.resetAt = now + RATE_LIMIT_WINDOW_MS;
+            rateLimits.put(endpoint, limit);
+        }
+        return limit;
+    }
+
+    // query parameters, and form parameters of POST requests
+    private static Map<String, String> params(RecordedRequest request) {
+        Map<String, String> params = new HashMap<>();
+        HttpUrl url = request.getRequestUrl();
+        for (String name : url.queryParameterNames()) {
+            params.put(name, url.queryParameter(name));
+        }
+        String body = request.getBody().readUtf8();
+        if (!body.isEmpty() && !body.startsWith("{")) {
+            for (String pair : body.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    params.put(decode(pair.substring(0, separator)), decode(pair.substring(separator + 1)));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static MockResponse json(Object body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json;charset=utf-8")
+                .setBody(body.toString());
+    }
+
+    private static MockResponse error(int statusCode, int code, String message) {
+        return new MockResponse()
+                .setResponseCode(statusCode)
+                .setHeader("Content-Type", "application/json;charset=utf-8")
+                .setBody("{\"errors\":[{\"code\":" + code + ",\"message\":" + JSONObject.quote(message) + "}]}");
+    }
+
+    // a gradient, so the image doesn't compress to almost nothing
+    private static byte[] image(int width, int height, Bitmap.CompressFormat format) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, width, height, 0xff1da1f2, 0xfff5f8fa, Shader.TileMode.CLAMP));
+        new Canvas(bitmap).drawRect(0, 0, width, height, paint);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(format, 80, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+}
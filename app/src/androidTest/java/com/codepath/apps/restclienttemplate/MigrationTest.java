@@ -0,0 +1,74 @@
+package com.codepath.apps.restclienttemplate;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.codepath.apps.restclienttemplate.models.PendingAction;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upgrades MyDatabase from version 6, the first one with a send queue, to the current version with
+ * MyDatabase's migrations. Each step is checked against the schema exported for its version (see
+ * app/schemas), and the result is opened with Room, which checks it against the entities the app is
+ * compiled with; a mismatch there would crash the app on upgrade.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(InstrumentationRegistry.getInstrumentation(),
+            MyDatabase.class.getCanonicalName(), new FrameworkSQLiteOpenHelperFactory());
+
+    @Test
+    public void migrate6To8KeepsPendingActions() throws IOException {
+        SupportSQLiteDatabase database = helper.createDatabase(TEST_DB, 6);
+        ContentValues action = new ContentValues();
+        action.put("tweetId", 42L);
+        action.put("type", PendingAction.LIKE);
+        action.put("attempts", 1);
+        database.insert("PendingAction", SQLiteDatabase.CONFLICT_FAIL, action);
+        database.close();
+
+        helper.runMigrationsAndValidate(TEST_DB, 7, true, MyDatabase.MIGRATION_6_7).close();
+        database = helper.runMigrationsAndValidate(TEST_DB, 8, true, MyDatabase.MIGRATION_7_8);
+        Cursor cursor = database.query("SELECT tweetId, type, attempts FROM PendingAction");
+        try {
+            assertTrue("pending action lost", cursor.moveToFirst());
+            assertEquals(42L, cursor.getLong(0));
+            assertEquals(PendingAction.LIKE, cursor.getString(1));
+            assertEquals(1, cursor.getInt(2));
+        } finally {
+            cursor.close();
+        }
+        database.close();
+
+        MyDatabase myDatabase = Room.databaseBuilder(InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                MyDatabase.class, TEST_DB)
+                .addMigrations(MyDatabase.MIGRATION_6_7, MyDatabase.MIGRATION_7_8)
+                .build();
+        try {
+            assertEquals(1, myDatabase.pendingActionDao().all().size());
+            assertTrue(myDatabase.draftDao().queued().isEmpty());
+        } finally {
+            myDatabase.close();
+        }
+    }
+}
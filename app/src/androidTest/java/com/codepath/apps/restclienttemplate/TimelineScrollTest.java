@@ -0,0 +1,282 @@
+package com.codepath.apps.restclienttemplate;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.codepath.apps.restclienttemplate.network.TwitterApp;
+import com.codepath.apps.restclienttemplate.network.TwitterClient;
+import com.github.scribejava.core.model.OAuth1AccessToken;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls TimelineActivity through a number of pages served by FakeTwitterApi and reports how long
+ * the user had to wait at the end of the list for each page, and how smoothly frames were drawn
+ * while scrolling (Android 7.0 and newer). Results are written to logcat under TAG and reported as
+ * instrumentation status, followed by the app's own Metrics.
+ *
+ * The run is configured with instrumentation arguments, e.g.
+ *   ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.pages=40
+ * pages (default 20), latencyMs (200), bytesPerSecond (0 for no limit), errorRate (0) and
+ * rateLimit (900 requests per endpoint per window).
+ *
+ * Requests are signed with a dummy access token, which the fake API doesn't check, so the test also
+ * runs on a device where nobody has logged in, e.g. a fresh emulator in CI.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TimelineScrollTest {
+
+    private static final String TAG = "ScrollHarness";
+    private static final long SEED = 42;
+    private static final long POLL_INTERVAL_MS = 16;
+    private static final long PAGE_TIMEOUT_MS = 30 * 1000;
+    private static final double FRAME_BUDGET_MS = 1000.0 / 60;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private int pages;
+    private FakeTwitterApi api;
+    private ActivityScenario<TimelineActivity> scenario;
+    private RecyclerView rvTweets;
+    private HandlerThread frameMetricsThread;
+    // total duration of each frame drawn while scrolling, in ms; written on frameMetricsThread
+    private final List<Double> frameDurations = Collections.synchronizedList(new ArrayList<Double>());
+
+    @Before
+    public void setUp() throws Exception {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        pages = Integer.parseInt(arguments.getString("pages", "20"));
+        api = new FakeTwitterApi((pages + 2) * TwitterClient.NUM_LOAD_TWEETS, SEED);
+        api.setLatencyMs(Long.parseLong(arguments.getString("latencyMs", "200")));
+        api.setBytesPerSecond(Long.parseLong(arguments.getString("bytesPerSecond", "0")));
+        api.setErrorRate(Double.parseDouble(arguments.getString("errorRate", "0")));
+        api.setRateLimit(Integer.parseInt(arguments.getString("rateLimit", "900")));
+        api.start();
+        TwitterClient.overrideBaseUrl(api.baseUrl());
+
+        // a dummy token for the in-memory client only; a token stored by an earlier login is kept
+        TwitterApp app = (TwitterApp) instrumentation.getTargetContext().getApplicationContext();
+        TwitterApp.getRestClient(app).instantiateClient(TwitterClient.REST_CONSUMER_KEY,
+                TwitterClient.REST_CONSUMER_SECRET, new OAuth1AccessToken("scroll-test-token", "scroll-test-secret"));
+
+        // start from an empty cache, so every run loads the same pages
+        app.getMyDatabase().clearAllTables();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (scenario != null) {
+            scenario.close();
+        }
+        if (frameMetricsThread != null) {
+            frameMetricsThread.quitSafely();
+        }
+        TwitterClient.overrideBaseUrl(null);
+        api.shutdown();
+    }
+
+    @Test
+    public void scrollThroughPages() throws Exception {
+        scenario = ActivityScenario.launch(TimelineActivity.class);
+        scenario.onActivity(new ActivityScenario.ActivityAction<TimelineActivity>() {
+            @Override
+            public void perform(TimelineActivity activity) {
+                rvTweets = activity.findViewById(R.id.rvTweets);
+                recordFrames(activity);
+            }
+        });
+        long launchedAt = SystemClock.uptimeMillis();
+        assertTrue("first page not shown", waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                return itemCount() > 0;
+            }
+        }));
+        long firstPageMs = SystemClock.uptimeMillis() - launchedAt;
+
+        List<Long> waits = new ArrayList<>();
+        int failedPages = 0;
+        for (int page = 0; page < pages; page++) {
+            Long wait = scrollToNextPage();
+            if (wait == null) {
+                failedPages++;
+            } else {
+                waits.add(wait);
+            }
+        }
+        report(firstPageMs, waits, failedPages);
+        assertTrue("no page was loaded", !waits.isEmpty());
+    }
+
+    // Scrolls to the end of the list and waits for the next page to be added below it. Returns how
+    // long the end of the list was visible before that happened (0 if the page was prefetched), or
+    // null if it didn't happen in time. Once the window is full the item count no longer grows, so a
+    // new page is recognized by the oldest row changing.
+    private Long scrollToNextPage() {
+        final long oldestId = oldestId();
+        long reachedEndAt = 0;
+        long startedAt = SystemClock.uptimeMillis();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                rvTweets.smoothScrollToPosition(rvTweets.getAdapter().getItemCount() - 1);
+            }
+        });
+        while (SystemClock.uptimeMillis() - startedAt < PAGE_TIMEOUT_MS) {
+            if (oldestId() != oldestId) {
+                return reachedEndAt == 0 ? 0 : SystemClock.uptimeMillis() - reachedEndAt;
+            }
+            if (reachedEndAt == 0 && isAtEnd()) {
+                reachedEndAt = SystemClock.uptimeMillis();
+            }
+            SystemClock.sleep(POLL_INTERVAL_MS);
+        }
+        // e.g. the request failed; scrolling up a little and back lets the scroll listener try again
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                rvTweets.scrollBy(0, -rvTweets.getHeight());
+            }
+        });
+        return null;
+    }
+
+    private void recordFrames(Activity activity) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return;
+        }
+        frameMetricsThread = new HandlerThread("FrameMetrics");
+        frameMetricsThread.start();
+        activity.getWindow().addOnFrameMetricsAvailableListener(new Window.OnFrameMetricsAvailableListener() {
+            @Override
+            public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCount) {
+                frameDurations.add(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION) / 1e6);
+            }
+        }, new Handler(frameMetricsThread.getLooper()));
+    }
+
+    private void report(long firstPageMs, List<Long> waits, int failedPages) {
+        Bundle results = new Bundle();
+        results.putLong("firstPageMs", firstPageMs);
+        results.putInt("pages", waits.size());
+        results.putInt("failedPages", failedPages);
+        results.putInt("requests", api.getRequestCount());
+        if (!waits.isEmpty()) {
+            Collections.sort(waits);
+            int prefetched = 0;
+            for (long wait : waits) {
+                if (wait == 0) {
+                    prefetched++;
+                }
+            }
+            results.putInt("prefetchedPages", prefetched);
+            results.putLong("pageWaitP50Ms", waits.get(waits.size() / 2));
+            results.putLong("pageWaitP90Ms", waits.get(waits.size() * 9 / 10));
+            results.putLong("pageWaitMaxMs", waits.get(waits.size() - 1));
+        }
+        List<Double> frames;
+        synchronized (frameDurations) {
+            frames = new ArrayList<>(frameDurations);
+        }
+        if (!frames.isEmpty()) {
+            Collections.sort(frames);
+            int janky = 0;
+            for (double frame : frames) {
+                if (frame > FRAME_BUDGET_MS) {
+                    janky++;
+                }
+            }
+            results.putInt("frames", frames.size());
+            results.putDouble("jankyFramePercent", 100.0 * janky / frames.size());
+            results.putDouble("frameP50Ms", frames.get(frames.size() / 2));
+            results.putDouble("frameP90Ms", frames.get(frames.size() * 9 / 10));
+            results.putDouble("frameP99Ms", frames.get(frames.size() * 99 / 100));
+        }
+        for (String key : results.keySet()) {
+            Log.i(TAG, key + ": " + results.get(key));
+        }
+        StringWriter metrics = new StringWriter();
+        Metrics.dump("", new PrintWriter(metrics));
+        Log.i(TAG, "Metrics:\n" + metrics);
+        results.putString("metrics", metrics.toString());
+        instrumentation.sendStatus(0, results);
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    private boolean waitFor(Condition condition) {
+        long startedAt = SystemClock.uptimeMillis();
+        while (SystemClock.uptimeMillis() - startedAt < PAGE_TIMEOUT_MS) {
+            if (condition.isMet()) {
+                return true;
+            }
+            SystemClock.sleep(POLL_INTERVAL_MS);
+        }
+        return false;
+    }
+
+    private int itemCount() {
+        final int[] count = new int[1];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                count[0] = rvTweets.getAdapter().getItemCount();
+            }
+        });
+        return count[0];
+    }
+
+    private long oldestId() {
+        final long[] id = new long[1];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                RecyclerView.Adapter<?> adapter = rvTweets.getAdapter();
+                id[0] = adapter.getItemCount() == 0 ? 0 : adapter.getItemId(adapter.getItemCount() - 1);
+            }
+        });
+        return id[0];
+    }
+
+    private boolean isAtEnd() {
+        final boolean[] atEnd = new boolean[1];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) rvTweets.getLayoutManager();
+                atEnd[0] = layoutManager.findLastVisibleItemPosition() == rvTweets.getAdapter().getItemCount() - 1;
+            }
+        });
+        return atEnd[0];
+    }
+
+    private void runOnMainSync(Runnable runnable) {
+        instrumentation.runOnMainSync(runnable);
+    }
+}
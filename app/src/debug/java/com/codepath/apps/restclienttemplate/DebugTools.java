@@ -0,0 +1,19 @@
+package com.codepath.apps.restclienttemplate;
+
+import android.app.Application;
+
+import com.facebook.stetho.Stetho;
+
+/**
+ * Debugging tools that are only part of debug builds; the release build has an empty version of
+ * this class in src/release.
+ */
+public class DebugTools {
+
+    private DebugTools() {}
+
+    public static void init(Application application) {
+        // use chrome://inspect to inspect your SQL database
+        Stetho.initializeWithDefaults(application);
+    }
+}
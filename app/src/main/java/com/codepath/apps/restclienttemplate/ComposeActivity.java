@@ -1,8 +1,6 @@
 package com.codepath.apps.restclienttemplate;
 
-import android.content.Intent;
 import android.os.Bundle;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -11,20 +9,17 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.codepath.apps.restclienttemplate.databinding.ActivityComposeBinding;
-import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.network.TweetSender;
 import com.codepath.apps.restclienttemplate.network.TwitterApp;
-import com.codepath.apps.restclienttemplate.network.TwitterClient;
-import com.codepath.asynchttpclient.callback.JsonHttpResponseHandler;
-
-import org.json.JSONException;
-import org.parceler.Parcels;
-
-import okhttp3.Headers;
 
 /**
- * This activity allows the user to write a message, then publish it onto Twitter. Once the tweet
- * has been published on Twitter, this activity should automatically finish, and the user should be
- * returned to the timeline (TimelineActivity.java) with the new tweet at the top of the page.
+ * This activity allows the user to write a message, then publish it onto Twitter. Once the user
+ * presses Tweet, the tweet is queued with TweetSender and this activity finishes right away; the
+ * user is returned to the timeline (TimelineActivity.java) with the new tweet at the top of the page,
+ * shown as pending until it has been published.
+ *
+ * Unsent text is saved as a draft whenever the activity is paused, and restored the next time the
+ * user writes a new tweet (or a reply to the same tweet).
  *
  * This activity appears when the user has clicked the "Compose" icon in the Action Bar on the top
  * right. It's started from TimelineActivity.java.
@@ -32,13 +27,15 @@ import okhttp3.Headers;
 
 public class ComposeActivity extends AppCompatActivity {
 
-    private static final String TAG = "ComposeActivity";
     private static final int MAX_TWEET_LENGTH = 280;
+    // screen name of the tweeter being replied to, empty for a new tweet
     private String inReplyTo;
     private String inReplyToID;
     private EditText etCompose;
     private Button btnTweet;
-    private TwitterClient client;
+    private TweetSender tweetSender;
+    // set once the tweet is queued, so it isn't saved as a draft as well
+    private boolean sent;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -51,17 +48,24 @@ public class ComposeActivity extends AppCompatActivity {
         getSupportActionBar().setLogo(R.drawable.ic_launcher_twitter_round);
         getSupportActionBar().setDisplayUseLogoEnabled(true);
 
-        client = TwitterApp.getRestClient(this);
+        tweetSender = ((TwitterApp) getApplicationContext()).getTweetSender();
 
         etCompose = binding.etCompose;
         btnTweet = binding.btnTweet;
 
-        // if tweet is written in reply, then the screen name of the user was passed in from intent
-        // screen name is autofilled into compose
-        inReplyTo = getIntent().getStringExtra(String.valueOf(R.string.screen_name));
-        inReplyToID = getIntent().getStringExtra(String.valueOf(R.string.id));
-        if (!inReplyTo.isEmpty()) {
-            etCompose.setText(inReplyTo);
+        // if tweet is written in reply, then the ID of the tweet and the screen name of its user were
+        // passed in from intent; the screen name is autofilled into compose, so the reply is threaded
+        long inReplyToTweetID = getIntent().getLongExtra(String.valueOf(R.string.id), 0);
+        inReplyToID = inReplyToTweetID == 0 ? "" : String.valueOf(inReplyToTweetID);
+        String screenName = getIntent().getStringExtra(String.valueOf(R.string.screen_name));
+        inReplyTo = screenName == null ? "" : screenName;
+        // the text is restored by the EditText itself when the activity is recreated
+        if (savedInstanceState == null) {
+            if (!inReplyTo.isEmpty() && etCompose.getText().length() == 0) {
+                etCompose.setText(inReplyTo);
+                etCompose.setSelection(inReplyTo.length());
+            }
+            loadDraft();
         }
         btnTweet.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -75,29 +79,36 @@ public class ComposeActivity extends AppCompatActivity {
                     Toast.makeText(ComposeActivity.this, "Sorry, your tweet is too long", Toast.LENGTH_LONG).show();
                     return;
                 }
-                client.publishTweet(tweetContent, inReplyToID, new JsonHttpResponseHandler() {
-                    @Override
-                    public void onSuccess(int statusCode, Headers headers, JSON json) {
-                        try {
-                            Tweet tweet = Tweet.fromJson(json.jsonObject);
-                            // send message (the tweet) back to parent (TimelineActivity) that tweet was published on Twitter
-                            Intent intent = new Intent();
-                            intent.putExtra(String.valueOf(R.string.sent_tweet), Parcels.wrap(tweet));
-                            setResult(RESULT_OK, intent);
-                            finish();
-                        } catch (JSONException e) {
-                            Toast.makeText(ComposeActivity.this, "Error: Tweet not parsed", Toast.LENGTH_LONG).show();
-                            e.printStackTrace();
-                        }
-                    }
+                tweetSender.send(tweetContent, inReplyToID);
+                sent = true;
+                finish();
+            }
+        });
+    }
 
-                    @Override
-                    public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
-                        Toast.makeText(ComposeActivity.this, "Error: Tweet not published", Toast.LENGTH_LONG).show();
-                        Log.e(TAG, "onFailure to publish tweet: " + response, throwable);
-                    }
-                });
+    // a saved draft replaces the prefilled text, unless the user has started typing in the meantime
+    private void loadDraft() {
+        tweetSender.loadDraft(inReplyToID, new TweetSender.DraftCallback() {
+            @Override
+            public void onDraftLoaded(String body) {
+                String current = etCompose.getText().toString();
+                boolean untouched = current.isEmpty() || current.equals(inReplyTo);
+                if (!body.isEmpty() && untouched && !isFinishing()) {
+                    etCompose.setText(body);
+                    etCompose.setSelection(body.length());
+                }
             }
         });
     }
+
+    // whatever hasn't been sent is kept as a draft; text that is only the prefilled reply handle
+    // isn't worth keeping
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (!sent) {
+            String body = etCompose.getText().toString();
+            tweetSender.saveDraft(body.equals(inReplyTo) ? "" : body, inReplyToID);
+        }
+    }
 }
\ No newline at end of file
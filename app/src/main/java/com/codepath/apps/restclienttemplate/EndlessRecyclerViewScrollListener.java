@@ -1,5 +1,7 @@
 package com.codepath.apps.restclienttemplate;
 
+import android.os.SystemClock;
+
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -18,6 +20,20 @@ public abstract class EndlessRecyclerViewScrollListener extends RecyclerView.OnS
     private boolean loading = true;
     // Sets the starting page index
     private final int startingPageIndex = 0;
+    // The most items below the current scroll position that can trigger a load, however fast
+    // the list is scrolled, so fast flings don't fetch pages far ahead of what is read
+    private int maxVisibleThreshold = 25;
+    // How many items per millisecond the list is scrolling down, smoothed over recent frames
+    private float itemsPerMs = 0;
+    // How long loading a page has been taking, smoothed over recent loads
+    private float pageLatencyMs = 1000;
+    private int lastScrolledPosition = -1;
+    private long lastScrolledTime = 0;
+    private long loadStartTime = 0;
+    // Weight given to the newest sample in the smoothed speed and latency
+    private static final float SMOOTHING = 0.2f;
+    // Start loading a bit earlier than the estimate, since both speed and latency vary
+    private static final float SAFETY_FACTOR = 1.5f;
 
     public EndlessRecyclerViewScrollListener(LinearLayoutManager layoutManager) {
         this.mLayoutManager = layoutManager;
@@ -26,11 +42,27 @@ public abstract class EndlessRecyclerViewScrollListener extends RecyclerView.OnS
     public EndlessRecyclerViewScrollListener(GridLayoutManager layoutManager) {
         this.mLayoutManager = layoutManager;
         visibleThreshold = visibleThreshold * layoutManager.getSpanCount();
+        maxVisibleThreshold = maxVisibleThreshold * layoutManager.getSpanCount();
     }
 
     public EndlessRecyclerViewScrollListener(StaggeredGridLayoutManager layoutManager) {
         this.mLayoutManager = layoutManager;
         visibleThreshold = visibleThreshold * layoutManager.getSpanCount();
+        maxVisibleThreshold = maxVisibleThreshold * layoutManager.getSpanCount();
+    }
+
+    // Caps how far ahead of the current scroll position a load can be triggered
+    public void setMaxVisibleThreshold(int maxVisibleThreshold) {
+        this.maxVisibleThreshold = maxVisibleThreshold;
+    }
+
+    // The number of items below the current scroll position at which to start loading more.
+    // This is how many items the user is expected to scroll past while the next page loads,
+    // so the page arrives before they reach the end, but never less than visibleThreshold
+    // or more than maxVisibleThreshold.
+    public int getVisibleThreshold() {
+        int expectedItems = (int) Math.ceil(itemsPerMs * pageLatencyMs * SAFETY_FACTOR);
+        return Math.max(visibleThreshold, Math.min(maxVisibleThreshold, expectedItems));
     }
 
     public int getLastVisibleItem(int[] lastVisibleItemPositions) {
@@ -63,6 +95,8 @@ public abstract class EndlessRecyclerViewScrollListener extends RecyclerView.OnS
             lastVisibleItemPosition = ((LinearLayoutManager) mLayoutManager).findLastVisibleItemPosition();
         }
 
+        trackScrollSpeed(lastVisibleItemPosition);
+
         // If the total item count is zero and the previous isn't, assume the
         // list is invalidated and should be reset back to initial state
         if (totalItemCount < previousTotalItemCount) {
@@ -84,14 +118,47 @@ public abstract class EndlessRecyclerViewScrollListener extends RecyclerView.OnS
         // the visibleThreshold and need to reload more data.
         // If we do need to reload some more data, we execute onLoadMore to fetch the data.
         // threshold should reflect how many total columns there are too
-        if (!loading && (lastVisibleItemPosition + visibleThreshold) > totalItemCount) {
+        if (!loading && (lastVisibleItemPosition + getVisibleThreshold()) > totalItemCount) {
             currentPage++;
+            loadStartTime = SystemClock.uptimeMillis();
             onLoadMore(currentPage, totalItemCount, view);
             loading = true;
         }
     }
 
-    // Call this method whenever performing new searches
+    // Once the list stops moving, the speed of the last scroll no longer predicts anything
+    @Override
+    public void onScrollStateChanged(RecyclerView view, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            itemsPerMs = 0;
+            lastScrolledPosition = -1;
+        }
+    }
+
+    private void trackScrollSpeed(int lastVisibleItemPosition) {
+        long now = SystemClock.uptimeMillis();
+        if (lastScrolledPosition >= 0 && now > lastScrolledTime) {
+            // only scrolling down brings the end of the list closer
+            int itemsScrolled = Math.max(0, lastVisibleItemPosition - lastScrolledPosition);
+            float speed = (float) itemsScrolled / (now - lastScrolledTime);
+            itemsPerMs += SMOOTHING * (speed - itemsPerMs);
+        }
+        lastScrolledPosition = lastVisibleItemPosition;
+        lastScrolledTime = now;
+    }
+
+    // Call this when the page requested by onLoadMore has been added, so the next load is started
+    // early enough. Growing item counts can't tell when that was: the list also grows with
+    // refreshes and pending tweets, and only changes on the next scroll
+    public void onLoadFinished() {
+        if (loadStartTime != 0) {
+            pageLatencyMs += SMOOTHING * ((SystemClock.uptimeMillis() - loadStartTime) - pageLatencyMs);
+            loadStartTime = 0;
+        }
+    }
+
+    // Call this method whenever performing new searches. A load that is still running is timed
+    // all the same, e.g. when the list was trimmed as the page was added
     public void resetState() {
         this.currentPage = this.startingPageIndex;
         this.previousTotalItemCount = 0;
@@ -22,8 +22,6 @@ import com.codepath.oauth.OAuthLoginActionBarActivity;
 
 public class LoginActivity extends OAuthLoginActionBarActivity<TwitterClient> {
 
-    private SampleModelDao sampleModelDao;
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -36,11 +34,11 @@ public class LoginActivity extends OAuthLoginActionBarActivity<TwitterClient> {
         final SampleModel sampleModel = new SampleModel();
         sampleModel.setName("CodePath");
 
-        sampleModelDao = ((TwitterApp) getApplicationContext()).getMyDatabase().sampleModelDao();
-
+        // the database is first used here, so it's built in the background rather than during startup
         AsyncTask.execute(new Runnable() {
             @Override
             public void run() {
+                SampleModelDao sampleModelDao = ((TwitterApp) getApplicationContext()).getMyDatabase().sampleModelDao();
                 sampleModelDao.insertModel(sampleModel);
             }
         });
@@ -0,0 +1,171 @@
+package com.codepath.apps.restclienttemplate;
+
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects performance measurements of the timeline into histograms: how long each request to
+ * Twitter takes and how large its response is, how long decoding a timeline response takes and how
+ * many tweets it had, how long binding a row takes, how long a search of the stored tweets takes,
+ * and how long it took from the app starting until the first tweets were shown.
+ *
+ * A histogram only keeps a count per bucket (1, 2, 5, 10, 20, 50, ...), so recording is cheap and
+ * its size never grows; percentiles are reported as the upper bound of the bucket they fall in.
+ * The same stages are marked as android.os.Trace sections, so they also show up in systrace and
+ * Perfetto.
+ *
+ * The metrics are printed by "adb shell dumpsys activity
+ * com.codepath.apps.restclienttemplate/.TimelineActivity", and exported to metrics.csv in the app's
+ * external files directory whenever the timeline is left.
+ *
+ * Values may be recorded from any thread.
+ */
+public class Metrics {
+
+    public static final String DECODE_US = "decode.us";
+    public static final String TWEETS_PER_PAGE = "decode.tweets_per_page";
+    public static final String BIND_US = "bind.us";
+    public static final String SEARCH_US = "search.us";
+    public static final String TIME_TO_FIRST_TWEET_MS = "app.time_to_first_tweet_ms";
+
+    private static final String TAG = "Metrics";
+    private static final String CSV_HEADER = "name,count,min,p50,p90,p99,max,mean";
+    // upper bounds of the buckets: 1, 2, 5, 10, 20, 50, ... 5,000,000,000
+    private static final long[] BOUNDS = new long[30];
+
+    static {
+        long scale = 1;
+        for (int i = 0; i < BOUNDS.length; i += 3) {
+            BOUNDS[i] = scale;
+            BOUNDS[i + 1] = 2 * scale;
+            BOUNDS[i + 2] = 5 * scale;
+            scale *= 10;
+        }
+    }
+
+    private static class Histogram {
+        // the last bucket counts the values above every bound
+        final long[] counts = new long[BOUNDS.length + 1];
+        long count;
+        long sum;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        void record(long value) {
+            int bucket = 0;
+            while (bucket < BOUNDS.length && value > BOUNDS[bucket]) {
+                bucket++;
+            }
+            counts[bucket]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        long percentile(int percent) {
+            long rank = (count * percent + 99) / 100;
+            long seen = 0;
+            for (int bucket = 0; bucket < BOUNDS.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(BOUNDS[bucket], max);
+                }
+            }
+            return max;
+        }
+    }
+
+    private static final Map<String, Histogram> histograms = new TreeMap<>();
+    private static long appStartedAt;
+    private static boolean firstTweetShown;
+
+    private Metrics() {}
+
+    public static String requestMs(String endpoint) {
+        return "request." + endpoint + ".ms";
+    }
+
+    // length of the decompressed response body, in characters
+    public static String responseChars(String endpoint) {
+        return "response." + endpoint + ".chars";
+    }
+
+    public static synchronized void appStarted() {
+        appStartedAt = SystemClock.elapsedRealtime();
+    }
+
+    // only the first call after the app started is recorded
+    public static synchronized void firstTweetShown() {
+        if (appStartedAt == 0 || firstTweetShown) {
+            return;
+        }
+        firstTweetShown = true;
+        record(TIME_TO_FIRST_TWEET_MS, SystemClock.elapsedRealtime() - appStartedAt);
+    }
+
+    public static synchronized void record(String name, long value) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            histograms.put(name, histogram);
+        }
+        histogram.record(value);
+    }
+
+    public static synchronized void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println(CSV_HEADER);
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            writer.print(prefix);
+            writer.println(row(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    // writes the metrics to metrics.csv in dir in the background; dir is null when external storage
+    // isn't available, in which case nothing is written
+    public static void export(@Nullable File dir) {
+        if (dir == null) {
+            return;
+        }
+        final File file = new File(dir, "metrics.csv");
+        final StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        synchronized (Metrics.class) {
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                csv.append(row(entry.getKey(), entry.getValue())).append('\n');
+            }
+        }
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Writer writer = new FileWriter(file);
+                    try {
+                        writer.write(csv.toString());
+                    } finally {
+                        writer.close();
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "unable to export metrics", e);
+                }
+            }
+        });
+    }
+
+    private static String row(String name, Histogram histogram) {
+        return name + "," + histogram.count + "," + histogram.min + "," + histogram.percentile(50) + ","
+                + histogram.percentile(90) + "," + histogram.percentile(99) + "," + histogram.max + ","
+                + histogram.sum / histogram.count;
+    }
+}
@@ -1,15 +1,56 @@
 package com.codepath.apps.restclienttemplate;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.codepath.apps.restclienttemplate.models.Draft;
+import com.codepath.apps.restclienttemplate.models.DraftDao;
+import com.codepath.apps.restclienttemplate.models.PendingAction;
+import com.codepath.apps.restclienttemplate.models.PendingActionDao;
 import com.codepath.apps.restclienttemplate.models.SampleModel;
 import com.codepath.apps.restclienttemplate.models.SampleModelDao;
+import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.models.TweetDao;
+import com.codepath.apps.restclienttemplate.models.TweetFts;
+import com.codepath.apps.restclienttemplate.models.TweetFtsDao;
+import com.codepath.apps.restclienttemplate.models.User;
 
-@Database(entities={SampleModel.class}, version=1)
+@Database(entities={SampleModel.class, Tweet.class, User.class, PendingAction.class, Draft.class,
+        TweetFts.class}, version=8)
 public abstract class MyDatabase extends RoomDatabase {
     public abstract SampleModelDao sampleModelDao();
 
+    public abstract TweetDao tweetDao();
+
+    public abstract PendingActionDao pendingActionDao();
+
+    public abstract DraftDao draftDao();
+
+    public abstract TweetFtsDao tweetFtsDao();
+
     // Database name to be used
     public static final String NAME = "MyDataBase";
+
+    // Upgrades keep the queued tweets, drafts and pending actions the user hasn't sent yet. The
+    // statements are the createSql of schemas/.../7.json and 8.json
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `Draft` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`body` TEXT, `inReplyToId` TEXT, `queued` INTEGER NOT NULL, `attempts` INTEGER NOT NULL)");
+        }
+    };
+
+    // tweets loaded before the upgrade are indexed for search as they're loaded again
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `TweetFts` USING FTS4(`body` TEXT, `name` TEXT, "
+                    + "`screenName` TEXT, `profileImageUrl` TEXT, `createdAtMillis` INTEGER NOT NULL, "
+                    + "tokenize=unicode61, notindexed=`profileImageUrl`, notindexed=`createdAtMillis`, prefix=`2,3`)");
+        }
+    };
 }
@@ -0,0 +1,84 @@
+package com.codepath.apps.restclienttemplate;
+
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.codepath.apps.restclienttemplate.adapters.SearchResultsAdapter;
+import com.codepath.apps.restclienttemplate.databinding.ActivitySearchBinding;
+import com.codepath.apps.restclienttemplate.models.SearchResult;
+import com.codepath.apps.restclienttemplate.network.SearchIndex;
+import com.codepath.apps.restclienttemplate.network.TwitterApp;
+
+import java.util.List;
+
+/**
+ * This activity searches the tweets the app has loaded, without going to Twitter. Results are
+ * looked up in the SearchIndex as the user types and replace the list with every keystroke; a
+ * search that is overtaken by the next keystroke is dropped.
+ *
+ * This activity appears when the user has clicked the "Search" icon in the Action Bar of
+ * TimelineActivity.java.
+ */
+
+public class SearchActivity extends AppCompatActivity {
+
+    private SearchIndex searchIndex;
+    private SearchResultsAdapter adapter;
+    private TextView tvNoResults;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        ActivitySearchBinding binding = ActivitySearchBinding.inflate(getLayoutInflater());
+        View view = binding.getRoot();
+        setContentView(view);
+
+        getSupportActionBar().setDisplayShowHomeEnabled(true);
+        getSupportActionBar().setLogo(R.drawable.ic_launcher_twitter_round);
+        getSupportActionBar().setDisplayUseLogoEnabled(true);
+
+        searchIndex = ((TwitterApp) getApplicationContext()).getSearchIndex();
+        tvNoResults = binding.tvNoResults;
+
+        RecyclerView rvResults = binding.rvResults;
+        adapter = new SearchResultsAdapter(this);
+        rvResults.setLayoutManager(new LinearLayoutManager(this));
+        rvResults.setAdapter(adapter);
+
+        EditText etSearch = binding.etSearch;
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                search(s.toString());
+            }
+        });
+    }
+
+    private void search(final String text) {
+        searchIndex.search(text, new SearchIndex.Callback() {
+            @Override
+            public void onResults(List<SearchResult> results) {
+                if (isFinishing()) {
+                    return;
+                }
+                adapter.setResults(results);
+                boolean typed = !text.trim().isEmpty();
+                tvNoResults.setVisibility(typed && results.isEmpty() ? View.VISIBLE : View.GONE);
+            }
+        });
+    }
+}
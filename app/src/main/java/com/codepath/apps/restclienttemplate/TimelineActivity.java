@@ -18,19 +18,16 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import com.codepath.apps.restclienttemplate.adapters.TweetsAdapter;
 import com.codepath.apps.restclienttemplate.databinding.ActivityTimelineBinding;
 import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.network.ActionQueue;
+import com.codepath.apps.restclienttemplate.network.TimelinePager;
+import com.codepath.apps.restclienttemplate.network.TweetSender;
 import com.codepath.apps.restclienttemplate.network.TwitterApp;
 import com.codepath.apps.restclienttemplate.network.TwitterClient;
-import com.codepath.asynchttpclient.callback.JsonHttpResponseHandler;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.parceler.Parcels;
-
-import java.util.ArrayList;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.List;
 
-import okhttp3.Headers;
-
 /**
  * This activity displays 25 tweets from the user's timeline, allows the user to refresh their timeline
  * by pulling down, and calls ComposeActivity.java if the user wants to publish a Tweet.
@@ -38,20 +35,32 @@ import okhttp3.Headers;
  * If the user has already logged in via Twitter and the OAuth token hasn't expired, then the user
  * automatically sees this activity upon opening the app. Otherwise, this activity is started once
  * the user successfully logs in from LoginActivity.java.
+ *
+ * The most recent pages of the timeline are cached in MyDatabase, so on a cold start the cached
+ * tweets are displayed while the fresh timeline is still being fetched from Twitter. Loading and
+ * paging of the timeline is handled by TimelinePager.
  */
 
 public class TimelineActivity extends AppCompatActivity {
 
     private static final String TAG = "TimelineActivity";
-    private static final int REQUEST_CODE = 20;
-    public static long max_id;
+    private static final int MAX_RECYCLED_ROWS = 10;
+    // a page requested with at most this many tweets left below the screen is one the user is
+    // about to wait for, rather than a prefetch
+    private static final int WAITING_THRESHOLD = 5;
     private TwitterClient client;
+    private TimelinePager pager;
+    private ActionQueue actionQueue;
+    private TweetSender tweetSender;
+    private int pendingTweetCount;
     private RecyclerView rvTweets;
-    private List<Tweet> tweets;
     private TweetsAdapter adapter;
     private SwipeRefreshLayout swipeContainer;
     private EndlessRecyclerViewScrollListener scrollListener;
     private MenuItem miActionProgressItem;
+    private boolean loadingTimeline = true;
+    // set when the user queued a new tweet, so the timeline scrolls up to it once it is displayed
+    private boolean scrollToTop;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -65,6 +74,64 @@ public class TimelineActivity extends AppCompatActivity {
         getSupportActionBar().setDisplayUseLogoEnabled(true);
 
         client = TwitterApp.getRestClient(this);
+        TwitterApp app = (TwitterApp) getApplicationContext();
+        pager = new TimelinePager(client, app.getMyDatabase(), app.getUserCache(), app.getTweetRepository(),
+                app.getSearchIndex(), app.getActionQueue(), new TimelinePager.Listener() {
+            @Override
+            public void onTimelineChanged(final List<Tweet> timeline) {
+                final boolean scroll = scrollToTop;
+                scrollToTop = false;
+                adapter.submitList(timeline, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!timeline.isEmpty()) {
+                            Metrics.firstTweetShown();
+                        }
+                        if (scroll) {
+                            rvTweets.smoothScrollToPosition(0);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onPageLoaded(List<Tweet> page) {
+                if (!isDestroyed()) {
+                    adapter.preload(page);
+                }
+            }
+
+            @Override
+            public void onLoadFailed(String message, @Nullable Throwable throwable) {
+                Toast.makeText(TimelineActivity.this, message, Toast.LENGTH_LONG).show();
+                Log.e(TAG, message, throwable);
+            }
+
+            @Override
+            public void onWindowTrimmed() {
+                // the item count may not have grown even though a page was added
+                scrollListener.resetState();
+            }
+        });
+
+        // retweets and likes are shown as soon as they're made, and corrected once Twitter answers
+        actionQueue = app.getActionQueue();
+        actionQueue.setListener(new ActionQueue.Listener() {
+            @Override
+            public void onActionApplied(long tweetId, String type) {
+                pager.applyAction(tweetId, type);
+            }
+
+            @Override
+            public void onCountConfirmed(long tweetId, String type, int count) {
+                pager.confirmCount(tweetId, type, count);
+            }
+
+            @Override
+            public void onActionFailed(String message) {
+                Toast.makeText(TimelineActivity.this, message, Toast.LENGTH_LONG).show();
+            }
+        });
 
         // pull down to refresh timeline
         swipeContainer = binding.swipeContainer;
@@ -81,71 +148,127 @@ public class TimelineActivity extends AppCompatActivity {
                 getResources().getColor(android.R.color.holo_red_light));
 
         rvTweets = binding.rvTweets;
-        tweets = new ArrayList<>();
-        adapter = new TweetsAdapter(this, tweets);
-        LinearLayoutManager linearLayoutManager = new LinearLayoutManager(this);
+        adapter = new TweetsAdapter(this);
+        adapter.setOnLoadGapListener(new TweetsAdapter.OnLoadGapListener() {
+            @Override
+            public void onLoadGap(Tweet gapTweet) {
+                pager.fillGap(gapTweet);
+            }
+        });
+        final LinearLayoutManager linearLayoutManager = new LinearLayoutManager(this);
         rvTweets.setLayoutManager(linearLayoutManager);
+        // keep enough spare rows around that a fling doesn't have to inflate new ones
+        rvTweets.getRecycledViewPool().setMaxRecycledViews(0, MAX_RECYCLED_ROWS);
 
         // continuously load data for endless scrolling
         scrollListener = new EndlessRecyclerViewScrollListener(linearLayoutManager) {
             @Override
             public void onLoadMore(int page, int totalItemsCount, RecyclerView view) {
-                loadNextDataFromApi(page);
+                int tweetsBelow = totalItemsCount - 1 - linearLayoutManager.findLastVisibleItemPosition();
+                pager.loadMore(tweetsBelow > WAITING_THRESHOLD, new TimelinePager.LoadMoreCallback() {
+                    @Override
+                    public void onLoaded() {
+                        scrollListener.onLoadFinished();
+                    }
+
+                    @Override
+                    public void onFailed() {
+                        // the list didn't grow, so without this the listener would never load again
+                        scrollListener.resetState();
+                    }
+                });
             }
         };
+        // on a fast fling, loading may start up to a page ahead so the next page is there in time
+        scrollListener.setMaxVisibleThreshold(TwitterClient.NUM_LOAD_TWEETS);
         rvTweets.addOnScrollListener(scrollListener);
+        // tweets evicted from the top of the timeline are loaded back as the user scrolls up to them
+        rvTweets.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView view, int dx, int dy) {
+                if (dy < 0 && linearLayoutManager.findFirstVisibleItemPosition() <= TwitterClient.NUM_LOAD_TWEETS / 2) {
+                    pager.loadNewer();
+                }
+            }
+        });
+        rvTweets.addOnScrollListener(adapter.createPreloader());
         rvTweets.setAdapter(adapter);
         rvTweets.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
 
-        populateHomeTimeline();
-    }
-
-    // older tweets have lower IDs; this sends request for the next 25 most recent tweets from timeline
-    // Twitter responds with the 25 tweets whose ID is no greater than max_id
-    private void loadNextDataFromApi(int offset) {
-        // avoid duplicate tweets since max_id is the ID of a currently displayed Tweet
-        client.getHomeTimeline(max_id - 1, new JsonHttpResponseHandler() {
-            @Override
-            public void onSuccess(int statusCode, Headers headers, JSON json) {
-                try {
-                    tweets.addAll(Tweet.fromJsonArray(json.jsonArray));
-                    adapter.notifyItemRangeInserted(tweets.size() - TwitterClient.NUM_LOAD_TWEETS - 1, TwitterClient.NUM_LOAD_TWEETS);
-                } catch (JSONException e) {
-                    Toast.makeText(TimelineActivity.this, "Error: Unable to parse timeline", Toast.LENGTH_LONG).show();
-                    e.printStackTrace();
+        // tweets written in ComposeActivity are shown on top while they're being sent
+        tweetSender = app.getTweetSender();
+        tweetSender.setListener(new TweetSender.Listener() {
+            @Override
+            public void onPendingTweetsChanged(List<Tweet> pendingTweets) {
+                if (pendingTweets.size() > pendingTweetCount) {
+                    scrollToTop = true;
                 }
+                pendingTweetCount = pendingTweets.size();
+                pager.setPendingTweets(pendingTweets);
             }
 
             @Override
-            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
-                Toast.makeText(TimelineActivity.this, "Error: Unable to refresh timeline", Toast.LENGTH_LONG).show();
-                Log.e(TAG, "Fetch timeline error: " + response, throwable);
+            public void onTweetSent(Tweet tweet) {
+                Toast.makeText(TimelineActivity.this, "Tweet sent!", Toast.LENGTH_LONG).show();
+                pager.addPostedTweet(tweet);
+            }
+
+            @Override
+            public void onSendFailed(String message) {
+                Toast.makeText(TimelineActivity.this, message, Toast.LENGTH_LONG).show();
             }
         });
-    }
 
-    // when timeline is refreshed (pulled down), this method will send a new request to Twitter
-    // and replace all the old data with the new Twitter response in the adapter
-    private void fetchTimelineAsync() {
-        max_id = 0;
-        client.getHomeTimeline(max_id, new JsonHttpResponseHandler() {
-            @Override
-            public void onSuccess(int statusCode, Headers headers, JSON json) {
-                try {
-                    tweets.clear();
-                    tweets.addAll(Tweet.fromJsonArray(json.jsonArray));
-                    adapter.notifyDataSetChanged();
-                } catch (JSONException e) {
-                    Toast.makeText(TimelineActivity.this, "Error: Unable to parse timeline", Toast.LENGTH_LONG).show();
-                    e.printStackTrace();
+        if (savedInstanceState == null) {
+            pager.loadCached();
+            populateHomeTimeline();
+        } else {
+            pager.restoreState(savedInstanceState, new Runnable() {
+                @Override
+                public void run() {
+                    hideProgressBar();
                 }
-                swipeContainer.setRefreshing(false);
-            }
+            });
+        }
+    }
+
+    // the pager's cursors are enough to read the same tweets back from the cache
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        pager.saveState(outState);
+    }
+
+    // metrics are exported whenever the timeline is left, so they can be pulled from a test device
+    @Override
+    protected void onStop() {
+        super.onStop();
+        Metrics.export(getExternalFilesDir(null));
+    }
+
+    // adb shell dumpsys activity com.codepath.apps.restclienttemplate/.TimelineActivity
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.println("Metrics:");
+        Metrics.dump(prefix + "  ", writer);
+    }
 
+    @Override
+    protected void onDestroy() {
+        actionQueue.setListener(null);
+        tweetSender.setListener(null);
+        super.onDestroy();
+    }
+
+    // when timeline is refreshed (pulled down), only the tweets newer than the ones already loaded
+    // are requested and added above them; the rest of the timeline is kept as it is
+    private void fetchTimelineAsync() {
+        pager.refresh(new Runnable() {
             @Override
-            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
-                Toast.makeText(TimelineActivity.this, "Error: Unable to refresh timeline", Toast.LENGTH_LONG).show();
-                Log.e(TAG, "Fetch timeline error: " + response, throwable);
+            public void run() {
+                swipeContainer.setRefreshing(false);
             }
         });
     }
@@ -160,7 +283,10 @@ public class TimelineActivity extends AppCompatActivity {
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
         miActionProgressItem = menu.findItem(R.id.miActionProgress);
-        showProgressBar();
+        // the timeline may have loaded before the menu was created
+        if (loadingTimeline) {
+            showProgressBar();
+        }
         return super.onPrepareOptionsMenu(menu);
     }
 
@@ -169,18 +295,21 @@ public class TimelineActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         final int compose = R.id.compose;
         final int logout = R.id.logout;
+        final int search = R.id.search;
         switch (item.getItemId()) {
+            case search:
+                startActivity(new Intent(this, SearchActivity.class));
+                return true;
+
             case compose:
                 // when the edit/compose button is pressed, launches Compose Activity
-                // empty ID and screen name indicates that it's a new tweet, not a reply
+                // no tweet ID indicates that it's a new tweet, not a reply
                 Intent intent = new Intent(this, ComposeActivity.class);
-                intent.putExtra(String.valueOf(R.string.id), "");
-                intent.putExtra(String.valueOf(R.string.screen_name), "");
-                startActivityForResult(intent, REQUEST_CODE);
+                startActivity(intent);
                 return true;
 
             case logout:
-                client.clearAccessToken();
+                ((TwitterApp) getApplicationContext()).logOut();
                 Intent i = new Intent(this, LoginActivity.class);
                 // clears all the previous activities, 'starting blank' at login screen again
                 i.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
@@ -191,42 +320,13 @@ public class TimelineActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
-    // if the user successfully published a tweet on the ComposeActivity screen, then the user has
-    // been automatically returned back to the start of the timeline screen with the new tweet at
-    // the top of the screen
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, @Nullable @org.jetbrains.annotations.Nullable Intent data) {
-        if (requestCode == REQUEST_CODE && resultCode == RESULT_OK) {
-            Toast.makeText(this, "Tweet sent!", Toast.LENGTH_LONG).show();
-            Tweet tweet = Parcels.unwrap(data.getParcelableExtra(String.valueOf(R.string.sent_tweet)));
-            tweets.add(0, tweet);
-            adapter.notifyItemInserted(0);
-            rvTweets.smoothScrollToPosition(0);
-        }
-        super.onActivityResult(requestCode, resultCode, data);
-    }
-
-    // load 25 tweets from the user's Twitter timeline into the RecyclerView on this screen
+    // load 25 tweets from the user's Twitter timeline into the RecyclerView on this screen,
+    // on top of any cached tweets that were displayed while waiting for the response
     private void populateHomeTimeline() {
-        max_id = 0;
-        client.getHomeTimeline(max_id, new JsonHttpResponseHandler() {
-            @Override
-            public void onSuccess(int statusCode, Headers headers, JSON json) {
-                JSONArray jsonArray = json.jsonArray;
-                try {
-                    tweets.addAll(Tweet.fromJsonArray(jsonArray));
-                    adapter.notifyDataSetChanged();
-                    hideProgressBar();
-                } catch (JSONException e) {
-                    Toast.makeText(TimelineActivity.this, "Unable to parse tweets", Toast.LENGTH_LONG).show();
-                    e.printStackTrace();
-                }
-            }
-
+        pager.loadInitial(new Runnable() {
             @Override
-            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
-                Toast.makeText(TimelineActivity.this, "Unable to load timeline", Toast.LENGTH_LONG).show();
-                Log.e(TAG, "onFailure" + response, throwable);
+            public void run() {
+                hideProgressBar();
             }
         });
     }
@@ -236,7 +336,10 @@ public class TimelineActivity extends AppCompatActivity {
     }
 
     public void hideProgressBar() {
-        miActionProgressItem.setVisible(false);
+        loadingTimeline = false;
+        if (miActionProgressItem != null) {
+            miActionProgressItem.setVisible(false);
+        }
     }
 
 }
\ No newline at end of file
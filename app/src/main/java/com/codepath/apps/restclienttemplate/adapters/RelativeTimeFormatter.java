@@ -0,0 +1,86 @@
+package com.codepath.apps.restclienttemplate.adapters;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Formats the time a tweet was made relative to the current time, using shorthand: m for minutes,
+ * h for hours, d for days. A label only depends on which minute, hour or day bucket the tweet's age
+ * falls in, so each label is built once and then reused by every bind that lands in the same
+ * bucket. Instances are not thread-safe and are meant to be used from the main thread.
+ */
+public class RelativeTimeFormatter {
+
+    private static final long SECOND_MILLIS = 1000;
+    private static final long MINUTE_MILLIS = 60 * SECOND_MILLIS;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    private static final int MAX_DATE_LABELS = 256;
+
+    private final String[] minuteLabels = new String[60];
+    private final String[] hourLabels = new String[24];
+    private final String[] dayLabels = new String[8];
+    // labels for tweets older than a week, keyed by local calendar day
+    private final Map<Long, String> dateLabels = new HashMap<>();
+    private final SimpleDateFormat sameYearFormat = new SimpleDateFormat("MMM d", Locale.getDefault());
+    private final SimpleDateFormat otherYearFormat = new SimpleDateFormat("MMM d, yyyy", Locale.getDefault());
+    private final Calendar calendar = Calendar.getInstance();
+
+    public String format(long time) {
+        return format(time, System.currentTimeMillis());
+    }
+
+    public String format(long time, long now) {
+        final long diff = now - time;
+        if (diff < MINUTE_MILLIS) {
+            return "just now";
+        } else if (diff < 2 * MINUTE_MILLIS) {
+            return "a minute ago";
+        } else if (diff < 60 * MINUTE_MILLIS) {
+            return label(minuteLabels, (int) (diff / MINUTE_MILLIS), " m");
+        } else if (diff < 120 * MINUTE_MILLIS) {
+            return "an hour ago";
+        } else if (diff < 24 * HOUR_MILLIS) {
+            return label(hourLabels, (int) (diff / HOUR_MILLIS), " h");
+        } else if (diff < 48 * HOUR_MILLIS) {
+            return "yesterday";
+        } else if (diff < 8 * DAY_MILLIS) {
+            return label(dayLabels, (int) (diff / DAY_MILLIS), " d");
+        }
+        return dateLabel(time, now);
+    }
+
+    private static String label(String[] labels, int bucket, String unit) {
+        String label = labels[bucket];
+        if (label == null) {
+            label = bucket + unit;
+            labels[bucket] = label;
+        }
+        return label;
+    }
+
+    // older tweets show their date, with the year only if it isn't the current one
+    private String dateLabel(long time, long now) {
+        calendar.setTimeInMillis(now);
+        int currentYear = calendar.get(Calendar.YEAR);
+        calendar.setTimeInMillis(time);
+        boolean sameYear = calendar.get(Calendar.YEAR) == currentYear;
+
+        long day = (time + TimeZone.getDefault().getOffset(time)) / DAY_MILLIS;
+        Long key = sameYear ? day : -day - 1;
+        String label = dateLabels.get(key);
+        if (label == null) {
+            if (dateLabels.size() >= MAX_DATE_LABELS) {
+                dateLabels.clear();
+            }
+            label = (sameYear ? sameYearFormat : otherYearFormat).format(new Date(time));
+            dateLabels.put(key, label);
+        }
+        return label;
+    }
+}
@@ -0,0 +1,92 @@
+package com.codepath.apps.restclienttemplate.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.codepath.apps.restclienttemplate.R;
+import com.codepath.apps.restclienttemplate.models.SearchResult;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This adapter is for the Recycler View in SearchActivity.java. Each row shows a tweet found in the
+ * search index with its author's profile picture, name and screen name, and when it was published.
+ *
+ * The whole list is replaced with every keystroke, so it is simply rebound rather than diffed.
+ */
+public class SearchResultsAdapter extends RecyclerView.Adapter<SearchResultsAdapter.ViewHolder> {
+
+    private final Context context;
+    private final RelativeTimeFormatter timeFormatter = new RelativeTimeFormatter();
+    private List<SearchResult> results = Collections.emptyList();
+
+    public SearchResultsAdapter(Context context) {
+        this.context = context;
+        setHasStableIds(true);
+    }
+
+    public void setResults(List<SearchResult> results) {
+        this.results = results;
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_search_result, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        holder.bind(results.get(position));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return results.get(position).id;
+    }
+
+    @Override
+    public int getItemCount() {
+        return results.size();
+    }
+
+    public class ViewHolder extends RecyclerView.ViewHolder {
+
+        private final ImageView ivProfileImage;
+        private final TextView tvName;
+        private final TextView tvScreenName;
+        private final TextView tvTime;
+        private final TextView tvBody;
+
+        public ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            ivProfileImage = itemView.findViewById(R.id.ivProfileImage);
+            tvName = itemView.findViewById(R.id.tvName);
+            tvScreenName = itemView.findViewById(R.id.tvScreenName);
+            tvTime = itemView.findViewById(R.id.tvTime);
+            tvBody = itemView.findViewById(R.id.tvBody);
+        }
+
+        public void bind(SearchResult result) {
+            tvName.setText(result.name);
+            tvScreenName.setText(result.screenName);
+            tvTime.setText(timeFormatter.format(result.createdAtMillis));
+            tvBody.setText(result.body);
+            Glide.with(context)
+                    .load(result.profileImageUrl)
+                    .circleCrop()
+                    .into(ivProfileImage);
+        }
+    }
+}
@@ -1,59 +1,232 @@
 package com.codepath.apps.restclienttemplate.adapters;
 
-import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.text.format.DateUtils;
-import android.util.Log;
+import android.graphics.drawable.Drawable;
+import android.os.Trace;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.TextView;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.load.DecodeFormat;
 import com.codepath.apps.restclienttemplate.ComposeActivity;
+import com.codepath.apps.restclienttemplate.Metrics;
 import com.codepath.apps.restclienttemplate.R;
+import com.codepath.apps.restclienttemplate.network.ActionQueue;
 import com.codepath.apps.restclienttemplate.network.TwitterApp;
 import com.codepath.apps.restclienttemplate.models.Tweet;
-import com.codepath.asynchttpclient.callback.JsonHttpResponseHandler;
 
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-
-import okhttp3.Headers;
 
 /**
  * This adapter is for the Recycler View in TimelineActivity.java, where each view holder within the
  * Recycler View displays a tweet from the user's timeline. For each tweet, the profile picture,
  * screen name, tweet text, and relative time that the text was published is displayed.
+ *
+ * The displayed list is replaced through submitList(); the difference to the previous list is
+ * computed on a background thread, so only rows whose tweets were added, removed or changed are
+ * rebound.
+ *
+ * Profile pictures and photos of the rows just below the screen are preloaded into Glide's cache
+ * while scrolling (see createPreloader()), as are those at the top of each newly loaded page.
+ * Photos are sized from their aspect ratio before they load, and the smallest variant Twitter
+ * serves that still fills the row's width is requested.
+ *
+ * Retweets and likes go through the app's ActionQueue, which shows them on the timeline right away.
  */
 
-public class TweetsAdapter extends RecyclerView.Adapter<TweetsAdapter.ViewHolder> {
+public class TweetsAdapter extends RecyclerView.Adapter<TweetsAdapter.ViewHolder>
+        implements ListPreloader.PreloadModelProvider<Object>, ListPreloader.PreloadSizeProvider<Object> {
 
-    private static final int SECOND_MILLIS = 1000;
-    private static final int MINUTE_MILLIS = 60 * SECOND_MILLIS;
-    private static final int HOUR_MILLIS = 60 * MINUTE_MILLIS;
-    private static final int DAY_MILLIS = 24 * HOUR_MILLIS;
-    private static final int REQUEST_CODE = 20;
-    private static final String TAG = "TweetAdapter";
+    // how many rows ahead of the screen are preloaded while scrolling, and from each new page
+    private static final int PRELOAD_ROWS = 6;
     private final Context context;
-    private final List<Tweet> tweets;
+    private final AsyncListDiffer<Tweet> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private final RelativeTimeFormatter timeFormatter = new RelativeTimeFormatter();
+    private final ActionQueue actionQueue;
+    private final int retweetedColor;
+    private final int likedColor;
+    private final int profileImageSize;
+    // width of ivTweetImage: the screen width less the row margins and the profile picture column
+    private final int mediaViewWidth;
+
+    // partial rebinds for a tweet whose only change is its counts (and whether the user retweeted or
+    // liked it), or whether it has a gap below it
+    private static final Object PAYLOAD_COUNTS = new Object();
+    private static final Object PAYLOAD_GAP = new Object();
+
+    // tweets are the same item if they have the same ID, and only need rebinding if what's displayed changed
+    private static final DiffUtil.ItemCallback<Tweet> DIFF_CALLBACK = new DiffUtil.ItemCallback<Tweet>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Tweet oldTweet, @NonNull Tweet newTweet) {
+            return oldTweet.ID == newTweet.ID;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Tweet oldTweet, @NonNull Tweet newTweet) {
+            // users are immutable, so a different User means the author's profile changed
+            return oldTweet.body.equals(newTweet.body)
+                    && oldTweet.user == newTweet.user
+                    && oldTweet.RTCount == newTweet.RTCount
+                    && oldTweet.likeCount == newTweet.likeCount
+                    && oldTweet.retweeted == newTweet.retweeted
+                    && oldTweet.favorited == newTweet.favorited
+                    && oldTweet.mediaURL.equals(newTweet.mediaURL)
+                    && oldTweet.gapBelow == newTweet.gapBelow;
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Tweet oldTweet, @NonNull Tweet newTweet) {
+            boolean sameContent = oldTweet.body.equals(newTweet.body)
+                    && oldTweet.user == newTweet.user
+                    && oldTweet.mediaURL.equals(newTweet.mediaURL);
+            boolean sameCounts = oldTweet.RTCount == newTweet.RTCount
+                    && oldTweet.likeCount == newTweet.likeCount
+                    && oldTweet.retweeted == newTweet.retweeted
+                    && oldTweet.favorited == newTweet.favorited;
+            if (sameContent && oldTweet.gapBelow == newTweet.gapBelow) {
+                return PAYLOAD_COUNTS;
+            }
+            if (sameContent && sameCounts) {
+                return PAYLOAD_GAP;
+            }
+            return null;
+        }
+    };
 
-    public TweetsAdapter(Context context, List<Tweet> tweets) {
+    // called when the user asks to load the tweets missing below a tweet
+    public interface OnLoadGapListener {
+        void onLoadGap(Tweet gapTweet);
+    }
+
+    private OnLoadGapListener onLoadGapListener;
+
+    public TweetsAdapter(Context context) {
         this.context = context;
-        this.tweets = tweets;
+        // rows are identified by tweet ID, so item animations and rebinds can reuse their views
+        setHasStableIds(true);
+        this.actionQueue = ((TwitterApp) context.getApplicationContext()).getActionQueue();
+        this.retweetedColor = ContextCompat.getColor(context, R.color.inline_action_retweet);
+        this.likedColor = ContextCompat.getColor(context, R.color.inline_action_like);
+        this.profileImageSize = context.getResources().getDimensionPixelSize(R.dimen.profile_image_size);
+        this.mediaViewWidth = context.getResources().getDisplayMetrics().widthPixels
+                - context.getResources().getDimensionPixelSize(R.dimen.tweet_media_inset);
+    }
+
+    public void setOnLoadGapListener(OnLoadGapListener onLoadGapListener) {
+        this.onLoadGapListener = onLoadGapListener;
+    }
+
+    // the adapter keeps the given list, so callers must pass a new list instead of modifying the old one
+    public void submitList(List<Tweet> tweets) {
+        differ.submitList(tweets);
+    }
+
+    // same as submitList(tweets), but runs commitCallback once the new list is displayed
+    public void submitList(List<Tweet> tweets, Runnable commitCallback) {
+        differ.submitList(tweets, commitCallback);
+    }
+
+    // scroll listener that preloads the images of the rows about to scroll into view
+    public RecyclerViewPreloader<Object> createPreloader() {
+        return new RecyclerViewPreloader<>(Glide.with(context), this, this, PRELOAD_ROWS);
+    }
+
+    // warms Glide's cache for the first rows of a page that was just loaded, before they are bound
+    public void preload(List<Tweet> page) {
+        for (int i = 0; i < Math.min(page.size(), PRELOAD_ROWS); i++) {
+            Tweet tweet = page.get(i);
+            profileImageRequest(tweet.user.profileImageUrl).preload(profileImageSize, profileImageSize);
+            if (!tweet.mediaURL.isEmpty()) {
+                mediaRequest(tweet).preload();
+            }
+        }
+    }
+
+    // preload items are the profile image URL of a row, followed by the row's tweet if it has a photo
+    @NonNull
+    @Override
+    public List<Object> getPreloadItems(int position) {
+        List<Tweet> tweets = differ.getCurrentList();
+        if (position >= tweets.size()) {
+            return Collections.emptyList();
+        }
+        Tweet tweet = tweets.get(position);
+        if (tweet.mediaURL.isEmpty()) {
+            return Collections.<Object>singletonList(tweet.user.profileImageUrl);
+        }
+        return Arrays.<Object>asList(tweet.user.profileImageUrl, tweet);
+    }
+
+    @Override
+    public RequestBuilder<Drawable> getPreloadRequestBuilder(@NonNull Object item) {
+        if (item instanceof Tweet) {
+            return mediaRequest((Tweet) item);
+        }
+        return profileImageRequest((String) item);
+    }
+
+    @Override
+    public int[] getPreloadSize(@NonNull Object item, int adapterPosition, int perItemPosition) {
+        if (item instanceof Tweet) {
+            return mediaSize((Tweet) item);
+        }
+        return new int[]{profileImageSize, profileImageSize};
+    }
+
+    // bind and preload use the same requests, so preloaded images are found in Glide's memory cache
+    private RequestBuilder<Drawable> profileImageRequest(String url) {
+        return Glide.with(context)
+                .load(url)
+                .circleCrop();
+    }
+
+    // photos have no transparency, so they are decoded at half the memory of ARGB_8888
+    private RequestBuilder<Drawable> mediaRequest(Tweet tweet) {
+        int[] size = mediaSize(tweet);
+        return Glide.with(context)
+                .load(mediaVariantURL(tweet, size[0]))
+                .format(DecodeFormat.PREFER_RGB_565)
+                .override(size[0], size[1])
+                .fitCenter();
+    }
+
+    // the photo fills the width of the row, at its own aspect ratio when its size is known
+    private int[] mediaSize(Tweet tweet) {
+        int height = mediaViewWidth;
+        if (tweet.mediaWidth > 0 && tweet.mediaHeight > 0) {
+            height = (int) ((long) mediaViewWidth * tweet.mediaHeight / tweet.mediaWidth);
+        }
+        return new int[]{mediaViewWidth, height};
+    }
+
+    // Twitter serves each photo in small, medium and large variants; use the smallest one that
+    // is at least as wide as the view
+    private static String mediaVariantURL(Tweet tweet, int width) {
+        if (tweet.mediaSmallWidth >= width) {
+            return tweet.mediaURL + ":small";
+        }
+        if (tweet.mediaMediumWidth >= width) {
+            return tweet.mediaURL + ":medium";
+        }
+        return tweet.mediaURL + ":large";
     }
 
     @NonNull
@@ -67,52 +240,42 @@ public class TweetsAdapter extends RecyclerView.Adapter<TweetsAdapter.ViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull @NotNull ViewHolder holder, int position) {
-        Tweet tweet = tweets.get(position);
+        Tweet tweet = differ.getCurrentList().get(position);
+        Trace.beginSection("TweetsAdapter.bind");
+        long start = System.nanoTime();
         holder.bind(tweet);
+        Metrics.record(Metrics.BIND_US, (System.nanoTime() - start) / 1000);
+        Trace.endSection();
     }
 
+    // when only the counts or the gap changed, just those views are updated; text and images stay
     @Override
-    public int getItemCount() {
-        return tweets.size();
-    }
-
-    // get the time that the Tweet was made relative to the current time;
-    // time is formatted using shorthand: d for days, h for hours
-    public String getRelativeTimeAgo(String rawJsonDate) {
-        String twitterFormat = "EEE MMM dd HH:mm:ss ZZZZZ yyyy";
-        SimpleDateFormat sf = new SimpleDateFormat(twitterFormat, Locale.ENGLISH);
-        sf.setLenient(true);
-
-        try {
-            long time = sf.parse(rawJsonDate).getTime();
-            long now = System.currentTimeMillis();
-
-            final long diff = now - time;
-            if (diff < MINUTE_MILLIS) {
-                return "just now";
-            } else if (diff < 2 * MINUTE_MILLIS) {
-                return "a minute ago";
-            } else if (diff < 60 * MINUTE_MILLIS) {
-                return diff / MINUTE_MILLIS + " m";
-            } else if (diff < 120 * MINUTE_MILLIS) {
-                return "an hour ago";
-            } else if (diff < 24 * HOUR_MILLIS) {
-                return diff / HOUR_MILLIS + " h";
-            } else if (diff < 48 * HOUR_MILLIS) {
-                return "yesterday";
-            } else if (diff < 8 * DAY_MILLIS) {
-                return diff / DAY_MILLIS + " d";
+    public void onBindViewHolder(@NonNull @NotNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        Tweet tweet = differ.getCurrentList().get(position);
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_COUNTS) {
+                holder.bindCounts(tweet);
+            } else if (payload == PAYLOAD_GAP) {
+                holder.bindGap(tweet);
             } else {
-                String relativeDate = "";
-                relativeDate = DateUtils.getRelativeTimeSpanString(time,
-                        System.currentTimeMillis(), DateUtils.SECOND_IN_MILLIS).toString();
-                return relativeDate;
+                holder.bind(tweet);
+                return;
             }
-        } catch (ParseException e) {
-            Toast.makeText(context, "Error: Unable to parse time of tweet", Toast.LENGTH_LONG).show();
-            e.printStackTrace();
         }
-        return "";
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).ID;
+    }
+
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
     }
 
     public class ViewHolder extends RecyclerView.ViewHolder {
@@ -125,9 +288,12 @@ public class TweetsAdapter extends RecyclerView.Adapter<TweetsAdapter.ViewHolder
         private final ImageView ivTweetImage;
         private final ImageButton ibReply;
         private final ImageButton ibRetweet;
+        private final ImageButton ibLike;
         private final TextView tvRTCount;
         private final TextView tvLikeCount;
+        private final TextView tvLoadGap;
 
+        // click listeners are created once per view holder and act on whichever tweet is bound at the time
         public ViewHolder(@NonNull @NotNull View itemView) {
             super(itemView);
             ivProfileImage = itemView.findViewById(R.id.ivProfileImage);
@@ -138,78 +304,121 @@ public class TweetsAdapter extends RecyclerView.Adapter<TweetsAdapter.ViewHolder
             ivTweetImage = itemView.findViewById(R.id.ivTweetImage);
             ibReply = itemView.findViewById(R.id.ibReply);
             ibRetweet = itemView.findViewById(R.id.ibRetweet);
+            ibLike = itemView.findViewById(R.id.ibLike);
             tvRTCount = itemView.findViewById(R.id.tvRTCount);
             tvLikeCount = itemView.findViewById(R.id.tvLikeCount);
-        }
+            tvLoadGap = itemView.findViewById(R.id.tvLoadGap);
 
-        public void bind(final Tweet tweet) {
-            tvBody.setText(tweet.body);
-            tvName.setText(tweet.user.name);
-            tvScreenName.setText(tweet.user.screenName);
-            tvTime.setText(getRelativeTimeAgo(tweet.createdAt));
-            tvRTCount.setText(String.valueOf(tweet.RTCount));
-            tvLikeCount.setText(String.valueOf(tweet.likeCount));
-            Glide.with(context)
-                    .load(tweet.user.profileImageUrl)
-                    .circleCrop()
-                    .into(ivProfileImage);
-
-            // if the tweet contains an image/photo, then embed it
-            if (!tweet.mediaURL.isEmpty()) {
-                ivTweetImage.setVisibility(View.VISIBLE);
-                Glide.with(context)
-                        .load(tweet.mediaURL)
-                        .into(ivTweetImage);
-            } else {
-                // no image view if no image in tweet
-                ivTweetImage.setVisibility(View.GONE);
-            }
+            // tweets between this one and the next row haven't been loaded yet; load them on click
+            tvLoadGap.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    Tweet tweet = getBoundTweet();
+                    if (tweet != null && onLoadGapListener != null) {
+                        onLoadGapListener.onLoadGap(tweet);
+                    }
+                }
+            });
 
             // when reply button is clicked, takes user to same activity as composing tweet
-            // signifies it's a reply by passing along ID and username of tweeter
+            // signifies it's a reply by passing along the tweet's ID and its user's screen name
             ibReply.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
+                    Tweet tweet = getBoundTweet();
+                    if (tweet == null) {
+                        return;
+                    }
                     Intent intent = new Intent(context, ComposeActivity.class);
-                    intent.putExtra(String.valueOf(R.string.id), String.valueOf(tweet.ID));
+                    intent.putExtra(String.valueOf(R.string.id), tweet.ID);
                     intent.putExtra(String.valueOf(R.string.screen_name), tweet.user.screenName);
-                    ((Activity) context).startActivityForResult(intent, REQUEST_CODE);
+                    context.startActivity(intent);
                 }
             });
 
-            // when retweet button is clicked, sends post request to Twitter API and handles response accordingly
+            // retweeting or liking (or undoing either) is shown right away and sent in the background
             ibRetweet.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
-                    TwitterApp.getRestClient(context).retweet(String.valueOf(tweet.ID), new JsonHttpResponseHandler() {
-                        @Override
-                        public void onSuccess(int statusCode, Headers headers, JSON json) {
-                            Toast.makeText(context, "Retweeted!", Toast.LENGTH_LONG).show();
-                            int ct = Integer.parseInt(tvRTCount.getText().toString());
-                            tvRTCount.setText(String.valueOf(ct + 1));
-                        }
-
-                        // handles when Twitter API responds with error code 327: message already retweeted
-                        @Override
-                        public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
-                            try {
-                                JSONObject err = new JSONObject(response);
-                                if (err.getJSONArray("errors").getJSONObject(0).getInt("code") == 327) {
-                                    Toast.makeText(context, "Already retweeted", Toast.LENGTH_LONG).show();
-                                } else {
-                                    Toast.makeText(context, "Unable to retweet", Toast.LENGTH_LONG).show();
-                                }
-                            } catch (JSONException e) {
-                                Toast.makeText(context, "Unable to retweet", Toast.LENGTH_LONG).show();
-                                Log.e(TAG, "unable to retweet" + response, throwable);
-                                e.printStackTrace();
-                            }
-                        }
-                    });
+                    Tweet tweet = getBoundTweet();
+                    if (tweet != null) {
+                        actionQueue.toggleRetweet(tweet);
+                    }
+                }
+            });
+
+            ibLike.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    Tweet tweet = getBoundTweet();
+                    if (tweet != null) {
+                        actionQueue.toggleLike(tweet);
+                    }
                 }
             });
         }
 
+        // the tweet currently shown by this view holder, or null if it isn't bound to a row
+        private Tweet getBoundTweet() {
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return null;
+            }
+            return differ.getCurrentList().get(position);
+        }
+
+        public void bind(Tweet tweet) {
+            tvBody.setText(tweet.body);
+            tvName.setText(tweet.user.name);
+            tvScreenName.setText(tweet.user.screenName);
+            if (tweet.pending) {
+                tvTime.setText(R.string.sending);
+            } else {
+                tvTime.setText(timeFormatter.format(tweet.createdAtMillis));
+            }
+            // a tweet that hasn't been published yet can't be replied to, retweeted or liked
+            ibReply.setEnabled(!tweet.pending);
+            ibRetweet.setEnabled(!tweet.pending);
+            ibLike.setEnabled(!tweet.pending);
+            bindCounts(tweet);
+            profileImageRequest(tweet.user.profileImageUrl).into(ivProfileImage);
+
+            // if the tweet contains an image/photo, then embed it
+            if (!tweet.mediaURL.isEmpty()) {
+                ivTweetImage.setVisibility(View.VISIBLE);
+                // reserve the photo's height before it loads, so the row doesn't change size afterwards
+                int height = mediaSize(tweet)[1];
+                ViewGroup.LayoutParams params = ivTweetImage.getLayoutParams();
+                if (params.height != height) {
+                    params.height = height;
+                    ivTweetImage.setLayoutParams(params);
+                }
+                mediaRequest(tweet).into(ivTweetImage);
+            } else {
+                // no image view if no image in tweet
+                ivTweetImage.setVisibility(View.GONE);
+            }
+            bindGap(tweet);
+        }
+
+        public void bindCounts(Tweet tweet) {
+            tvRTCount.setText(String.valueOf(tweet.RTCount));
+            tvLikeCount.setText(String.valueOf(tweet.likeCount));
+            // the buttons are tinted while the user has retweeted or liked the tweet
+            if (tweet.retweeted) {
+                ibRetweet.setColorFilter(retweetedColor);
+            } else {
+                ibRetweet.clearColorFilter();
+            }
+            if (tweet.favorited) {
+                ibLike.setColorFilter(likedColor);
+            } else {
+                ibLike.clearColorFilter();
+            }
+        }
 
+        public void bindGap(Tweet tweet) {
+            tvLoadGap.setVisibility(tweet.gapBelow ? View.VISIBLE : View.GONE);
+        }
     }
 }
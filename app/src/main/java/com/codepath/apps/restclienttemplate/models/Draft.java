@@ -0,0 +1,38 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/*
+ * A tweet the user has written but that hasn't been published yet. It stays a draft while the user
+ * is still editing it, and is queued once they press Tweet; queued drafts are sent in order by id.
+ */
+@Entity
+public class Draft {
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo
+    public long id;
+
+    @ColumnInfo
+    public String body;
+
+    // ID of the tweet this is a reply to, or empty for a new tweet
+    @ColumnInfo
+    public String inReplyToId;
+
+    @ColumnInfo
+    public boolean queued;
+
+    // how many times sending this tweet has failed, used to back off between retries
+    @ColumnInfo
+    public int attempts;
+
+    public Draft() {}
+
+    public Draft(String body, String inReplyToId) {
+        this.body = body;
+        this.inReplyToId = inReplyToId;
+    }
+}
@@ -0,0 +1,32 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import java.util.List;
+
+@Dao
+public interface DraftDao {
+
+    @Query("SELECT * FROM Draft WHERE queued = 1 ORDER BY id")
+    List<Draft> queued();
+
+    // the draft the user was writing in reply to the given tweet (or as a new tweet), if any
+    @Query("SELECT * FROM Draft WHERE queued = 0 AND inReplyToId = :inReplyToId ORDER BY id DESC LIMIT 1")
+    Draft unsent(String inReplyToId);
+
+    @Insert
+    long insertModel(Draft draft);
+
+    @Update
+    void updateModel(Draft draft);
+
+    @Delete
+    void deleteModel(Draft draft);
+
+    @Query("DELETE FROM Draft")
+    void deleteAll();
+}
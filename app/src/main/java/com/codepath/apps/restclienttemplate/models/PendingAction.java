@@ -0,0 +1,59 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/*
+ * A retweet, unretweet, like or unlike the user made that hasn't been confirmed by Twitter yet.
+ * Actions are stored so they are sent even if the app is closed before a connection is available,
+ * and are sent in the order they were made (by id).
+ */
+@Entity
+public class PendingAction {
+
+    public static final String RETWEET = "retweet";
+    public static final String UNRETWEET = "unretweet";
+    public static final String LIKE = "like";
+    public static final String UNLIKE = "unlike";
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo
+    public long id;
+
+    @ColumnInfo
+    public long tweetId;
+
+    @ColumnInfo
+    public String type;
+
+    // how many times sending this action has failed, used to back off between retries
+    @ColumnInfo
+    public int attempts;
+
+    public PendingAction() {}
+
+    public PendingAction(long tweetId, String type) {
+        this.tweetId = tweetId;
+        this.type = type;
+    }
+
+    // the action that undoes this one
+    public static String inverse(String type) {
+        switch (type) {
+            case RETWEET:
+                return UNRETWEET;
+            case UNRETWEET:
+                return RETWEET;
+            case LIKE:
+                return UNLIKE;
+            default:
+                return LIKE;
+        }
+    }
+
+    // whether the type is a retweet or unretweet, rather than a like or unlike
+    public static boolean isRetweet(String type) {
+        return type.equals(RETWEET) || type.equals(UNRETWEET);
+    }
+}
@@ -0,0 +1,28 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import java.util.List;
+
+@Dao
+public interface PendingActionDao {
+
+    @Query("SELECT * FROM PendingAction ORDER BY id")
+    List<PendingAction> all();
+
+    @Insert
+    long insertModel(PendingAction pendingAction);
+
+    @Update
+    void updateModel(PendingAction pendingAction);
+
+    @Delete
+    void deleteModel(PendingAction pendingAction);
+
+    @Query("DELETE FROM PendingAction")
+    void deleteAll();
+}
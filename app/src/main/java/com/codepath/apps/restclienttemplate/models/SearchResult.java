@@ -0,0 +1,28 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Ignore;
+
+// A tweet matching a search, read back from the TweetFts index
+public class SearchResult {
+
+    @ColumnInfo(name = "rowid")
+    public long id;
+
+    public String body;
+
+    public String name;
+
+    public String screenName;
+
+    public String profileImageUrl;
+
+    public long createdAtMillis;
+
+    // the FTS4 matchinfo(TweetFts, 'pcx') blob this result is ranked by
+    public byte[] matchInfo;
+
+    // higher is better; set by SearchIndex once the results are read
+    @Ignore
+    public double score;
+}
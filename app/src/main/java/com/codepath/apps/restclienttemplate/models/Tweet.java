@@ -1,30 +1,162 @@
 package com.codepath.apps.restclienttemplate.models;
 
-import com.codepath.apps.restclienttemplate.TimelineActivity;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.parceler.Parcel;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 // All exceptions thrown by methods in this class are handled by the caller
-@Parcel
+@Entity
 public class Tweet {
 
+    @PrimaryKey
+    @ColumnInfo
+    public long ID;
+
+    @ColumnInfo
     public String body;
+
+    @ColumnInfo
     public String createdAt;
-    public User user;
+
+    // createdAt parsed once at decode time, so binding a row never has to parse dates
+    @ColumnInfo
+    public long createdAtMillis;
+
+    @ColumnInfo
     public String mediaURL;
-    public long ID;
+
+    // size of the "large" variant of the photo, whose aspect ratio is the photo's own
+    @ColumnInfo
+    public int mediaWidth;
+
+    @ColumnInfo
+    public int mediaHeight;
+
+    // widths of the downscaled "small" and "medium" variants of the photo
+    @ColumnInfo
+    public int mediaSmallWidth;
+
+    @ColumnInfo
+    public int mediaMediumWidth;
+
+    @ColumnInfo
     public int RTCount;
+
+    @ColumnInfo
     public int likeCount;
 
-    // empty constructor for Parceler Library
+    // whether the user has retweeted / liked this tweet
+    @ColumnInfo
+    public boolean retweeted;
+
+    @ColumnInfo
+    public boolean favorited;
+
+    // author is stored in its own table; the User object is attached when tweets are read back
+    @ColumnInfo
+    public long userId;
+
+    @Ignore
+    public User user;
+
+    // true if tweets between this one and the next older stored tweet haven't been loaded yet
+    @ColumnInfo
+    public boolean gapBelow;
+
+    // true for a tweet the user wrote that hasn't been published yet (see fromDraft)
+    @Ignore
+    public boolean pending;
+
+    // empty constructor for Room
     public Tweet() {}
 
+    // tweets in a displayed list are replaced by an updated copy rather than modified in place,
+    // so the old and new versions can still be told apart when the lists are diffed
+    public Tweet copy() {
+        Tweet tweet = new Tweet();
+        tweet.ID = ID;
+        tweet.body = body;
+        tweet.createdAt = createdAt;
+        tweet.createdAtMillis = createdAtMillis;
+        tweet.mediaURL = mediaURL;
+        tweet.mediaWidth = mediaWidth;
+        tweet.mediaHeight = mediaHeight;
+        tweet.mediaSmallWidth = mediaSmallWidth;
+        tweet.mediaMediumWidth = mediaMediumWidth;
+        tweet.RTCount = RTCount;
+        tweet.likeCount = likeCount;
+        tweet.retweeted = retweeted;
+        tweet.favorited = favorited;
+        tweet.userId = userId;
+        tweet.user = user;
+        tweet.gapBelow = gapBelow;
+        tweet.pending = pending;
+        return tweet;
+    }
+
+    // a queued draft shown on the timeline until it is published. Its ID is the draft's id negated,
+    // so it can't collide with a real tweet
+    public static Tweet fromDraft(Draft draft, User user) {
+        Tweet tweet = new Tweet();
+        tweet.ID = -draft.id;
+        tweet.body = draft.body;
+        tweet.createdAt = "";
+        tweet.mediaURL = "";
+        tweet.userId = user.id;
+        tweet.user = user;
+        tweet.pending = true;
+        return tweet;
+    }
+
+    // a copy showing the given retweet, unretweet, like or unlike by the user; the tweet itself if
+    // it already is in that state
+    public Tweet withAction(String type) {
+        Tweet tweet = copy();
+        if (PendingAction.isRetweet(type)) {
+            boolean retweet = type.equals(PendingAction.RETWEET);
+            if (retweeted == retweet) {
+                return this;
+            }
+            tweet.retweeted = retweet;
+            tweet.RTCount += retweet ? 1 : -1;
+        } else {
+            boolean like = type.equals(PendingAction.LIKE);
+            if (favorited == like) {
+                return this;
+            }
+            tweet.favorited = like;
+            tweet.likeCount += like ? 1 : -1;
+        }
+        return tweet;
+    }
+
+    // a copy with the retweet or like count Twitter reported after confirming the given action
+    public Tweet withConfirmedCount(String type, int count) {
+        Tweet tweet = copy();
+        if (PendingAction.isRetweet(type)) {
+            tweet.retweeted = type.equals(PendingAction.RETWEET);
+            tweet.RTCount = count;
+        } else {
+            tweet.favorited = type.equals(PendingAction.LIKE);
+            tweet.likeCount = count;
+        }
+        return tweet;
+    }
+
     public static Tweet fromJson(JSONObject jsonObject) throws JSONException {
         Tweet tweet = new Tweet();
         if(jsonObject.has("full_text")) {
@@ -34,11 +166,18 @@ public class Tweet {
             tweet.body = jsonObject.getString("text");
         }
         tweet.createdAt = jsonObject.getString("created_at");
-        tweet.user = User.fromJson(jsonObject.getJSONObject("user"));
+        try {
+            tweet.createdAtMillis = TwitterDateParser.parse(tweet.createdAt);
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        }
+        tweet.user = UserMap.intern(User.fromJson(jsonObject.getJSONObject("user")));
+        tweet.userId = tweet.user.id;
         tweet.ID = jsonObject.getLong("id");
         tweet.RTCount = jsonObject.getInt("retweet_count");
         tweet.likeCount = jsonObject.getInt("favorite_count");
-        TimelineActivity.max_id = tweet.ID;
+        tweet.retweeted = jsonObject.optBoolean("retweeted");
+        tweet.favorited = jsonObject.optBoolean("favorited");
 
         // checks if tweet contains a photo. If there is one, sets that URL. Empty URL means no photo
         if (jsonObject.getJSONObject("entities").has("media")) {
@@ -47,6 +186,11 @@ public class Tweet {
             while (i < media.length()) {
                 if (media.getJSONObject(i).getString("type").equals("photo")) {
                     tweet.mediaURL = media.getJSONObject(i).getString("media_url_https");
+                    JSONObject sizes = media.getJSONObject(i).getJSONObject("sizes");
+                    tweet.mediaWidth = sizes.getJSONObject("large").getInt("w");
+                    tweet.mediaHeight = sizes.getJSONObject("large").getInt("h");
+                    tweet.mediaSmallWidth = sizes.getJSONObject("small").getInt("w");
+                    tweet.mediaMediumWidth = sizes.getJSONObject("medium").getInt("w");
                     return tweet;
                 }
                 i++;
@@ -63,4 +207,167 @@ public class Tweet {
         }
         return tweets;
     }
+
+    // streaming counterpart of fromJson: reads one tweet object token by token, keeping only the
+    // fields that are displayed and skipping the rest of the payload without materializing it
+    public static Tweet fromJson(JsonReader reader) throws IOException {
+        Tweet tweet = new Tweet();
+        String text = null;
+        tweet.mediaURL = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "full_text":
+                    tweet.body = reader.nextString();
+                    break;
+                case "text":
+                    text = reader.nextString();
+                    break;
+                case "created_at":
+                    tweet.createdAt = reader.nextString();
+                    break;
+                case "id":
+                    tweet.ID = reader.nextLong();
+                    break;
+                case "retweet_count":
+                    tweet.RTCount = reader.nextInt();
+                    break;
+                case "favorite_count":
+                    tweet.likeCount = reader.nextInt();
+                    break;
+                case "retweeted":
+                    tweet.retweeted = reader.nextBoolean();
+                    break;
+                case "favorited":
+                    tweet.favorited = reader.nextBoolean();
+                    break;
+                case "user":
+                    tweet.user = UserMap.intern(User.fromJson(reader));
+                    break;
+                case "extended_entities":
+                    readPhoto(reader, tweet);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (tweet.body == null) {
+            // retweets and replies don't have full_text
+            tweet.body = text;
+        }
+        if (tweet.ID == 0 || tweet.body == null || tweet.createdAt == null || tweet.user == null) {
+            throw new IOException("Tweet " + tweet.ID + " is missing its id, text, created_at or user");
+        }
+        tweet.userId = tweet.user.id;
+        try {
+            tweet.createdAtMillis = TwitterDateParser.parse(tweet.createdAt);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return tweet;
+    }
+
+    public static List<Tweet> fromJsonArray(JsonReader reader) throws IOException {
+        List<Tweet> tweets = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            tweets.add(fromJson(reader));
+        }
+        reader.endArray();
+        return tweets;
+    }
+
+    // sets the URL and sizes of the first photo in extended_entities.media; the URL stays empty if there is none
+    private static void readPhoto(JsonReader reader, Tweet tweet) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("media") || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String type = null;
+                String mediaURL = null;
+                // widths of the small, medium and large variants, then the height of the large one
+                int[] sizes = new int[4];
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "type":
+                            type = reader.nextString();
+                            break;
+                        case "media_url_https":
+                            mediaURL = reader.nextString();
+                            break;
+                        case "sizes":
+                            readSizes(reader, sizes);
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (tweet.mediaURL.isEmpty() && "photo".equals(type) && mediaURL != null) {
+                    tweet.mediaURL = mediaURL;
+                    tweet.mediaSmallWidth = sizes[0];
+                    tweet.mediaMediumWidth = sizes[1];
+                    tweet.mediaWidth = sizes[2];
+                    tweet.mediaHeight = sizes[3];
+                }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+    }
+
+    private static void readSizes(JsonReader reader, int[] sizes) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int index;
+            switch (reader.nextName()) {
+                case "small":
+                    index = 0;
+                    break;
+                case "medium":
+                    index = 1;
+                    break;
+                case "large":
+                    index = 2;
+                    break;
+                default:
+                    reader.skipValue();
+                    continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "w":
+                        sizes[index] = reader.nextInt();
+                        break;
+                    case "h":
+                        if (index == 2) {
+                            sizes[3] = reader.nextInt();
+                        } else {
+                            reader.skipValue();
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+    }
+
+    // the distinct authors of the given tweets, so they can be stored alongside them
+    public static List<User> getUsers(List<Tweet> tweets) {
+        Map<Long, User> users = new LinkedHashMap<>();
+        for (Tweet tweet : tweets) {
+            users.put(tweet.user.id, tweet.user);
+        }
+        return new ArrayList<>(users.values());
+    }
 }
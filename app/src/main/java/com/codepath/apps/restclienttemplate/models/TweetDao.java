@@ -0,0 +1,78 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public interface TweetDao {
+
+    // home timeline order: Twitter IDs increase over time, so the newest tweets come first
+    @Transaction
+    @Query("SELECT * FROM Tweet ORDER BY ID DESC LIMIT :limit")
+    List<TweetWithUser> recentItems(int limit);
+
+    @Transaction
+    @Query("SELECT * FROM Tweet WHERE ID = :id")
+    TweetWithUser byId(long id);
+
+    // the stored tweets from newest down to oldest, both included
+    @Transaction
+    @Query("SELECT * FROM Tweet WHERE ID <= :newest AND ID >= :oldest ORDER BY ID DESC")
+    List<TweetWithUser> between(long newest, long oldest);
+
+    // the stored tweets right below / above the given one, for reading back evicted pages
+    @Transaction
+    @Query("SELECT * FROM Tweet WHERE ID < :id ORDER BY ID DESC LIMIT :limit")
+    List<TweetWithUser> olderThan(long id, int limit);
+
+    // oldest first
+    @Transaction
+    @Query("SELECT * FROM Tweet WHERE ID > :id ORDER BY ID ASC LIMIT :limit")
+    List<TweetWithUser> newerThan(long id, int limit);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertModel(Tweet... tweets);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertModel(User... users);
+
+    @Query("SELECT * FROM User WHERE id IN (:ids)")
+    List<User> users(List<Long> ids);
+
+    // applies a retweet/unretweet made by the user; nothing changes if the tweet is already in that state
+    @Query("UPDATE Tweet SET retweeted = :retweeted, RTCount = RTCount + (CASE WHEN :retweeted THEN 1 ELSE -1 END) "
+            + "WHERE ID = :id AND retweeted != :retweeted")
+    void setRetweeted(long id, boolean retweeted);
+
+    // applies a like/unlike made by the user; nothing changes if the tweet is already in that state
+    @Query("UPDATE Tweet SET favorited = :favorited, likeCount = likeCount + (CASE WHEN :favorited THEN 1 ELSE -1 END) "
+            + "WHERE ID = :id AND favorited != :favorited")
+    void setFavorited(long id, boolean favorited);
+
+    // replaces the stored count with the one Twitter reported
+    @Query("UPDATE Tweet SET RTCount = :RTCount, retweeted = :retweeted WHERE ID = :id")
+    void updateRetweetCount(long id, int RTCount, boolean retweeted);
+
+    @Query("UPDATE Tweet SET likeCount = :likeCount, favorited = :favorited WHERE ID = :id")
+    void updateLikeCount(long id, int likeCount, boolean favorited);
+
+    // empties the cache when the user logs out
+    @Query("DELETE FROM Tweet")
+    void deleteTweets();
+
+    @Query("DELETE FROM User")
+    void deleteUsers();
+
+    // keeps only the newest tweets so the cache doesn't grow without bound
+    @Query("DELETE FROM Tweet WHERE ID NOT IN (SELECT ID FROM Tweet ORDER BY ID DESC LIMIT :limit)")
+    void trimTo(int limit);
+
+    // authors are saved with every page, so once their tweets are trimmed they go as well
+    @Query("DELETE FROM User WHERE id NOT IN (SELECT userId FROM Tweet)")
+    void trimUsers();
+}
@@ -0,0 +1,95 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+
+import com.codepath.apps.restclienttemplate.Metrics;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes Twitter API responses into tweets away from the main thread. Responses are parsed one at
+ * a time on a dedicated background thread, and the finished list is posted back to the main thread
+ * as an unmodifiable list, so the UI thread only has to update the adapter.
+ *
+ * A response that isn't what Twitter sends (malformed JSON, a number that doesn't fit, or a tweet
+ * without its id, text, date or author) is reported through onError rather than thrown on the
+ * decoder thread, where it would crash the app.
+ */
+public class TweetDecoder {
+
+    public interface Callback {
+        // called on the main thread with the decoded tweets, in the order Twitter returned them
+        void onDecoded(List<Tweet> tweets);
+
+        // called on the main thread if the response could not be parsed
+        void onError(Exception e);
+    }
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private TweetDecoder() {}
+
+    // decodes a home timeline response (a JSON array of tweets)
+    public static void decodeTimeline(final String response, final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Trace.beginSection("TweetDecoder.decodeTimeline");
+                long start = System.nanoTime();
+                try {
+                    List<Tweet> tweets = Tweet.fromJsonArray(new JsonReader(new StringReader(response)));
+                    Metrics.record(Metrics.DECODE_US, (System.nanoTime() - start) / 1000);
+                    Metrics.record(Metrics.TWEETS_PER_PAGE, tweets.size());
+                    deliver(tweets, callback);
+                } catch (IOException | IllegalStateException | NumberFormatException e) {
+                    fail(e, callback);
+                } finally {
+                    Trace.endSection();
+                }
+            }
+        });
+    }
+
+    // decodes a single tweet object, e.g. the response to statuses/update
+    public static void decodeTweet(final String response, final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    deliver(Collections.singletonList(Tweet.fromJson(new JsonReader(new StringReader(response)))), callback);
+                } catch (IOException | IllegalStateException | NumberFormatException e) {
+                    fail(e, callback);
+                }
+            }
+        });
+    }
+
+    private static void deliver(final List<Tweet> tweets, final Callback callback) {
+        final List<Tweet> result = Collections.unmodifiableList(tweets);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onDecoded(result);
+            }
+        });
+    }
+
+    private static void fail(final Exception e, final Callback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onError(e);
+            }
+        });
+    }
+}
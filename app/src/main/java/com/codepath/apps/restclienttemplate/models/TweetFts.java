@@ -0,0 +1,55 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/*
+ * A tweet in the full-text search index (see SearchIndex). The index is kept apart from the timeline
+ * cache, which only holds the newest few hundred tweets, and has its own copy of everything a search
+ * result shows. Only the text and the author's names are indexed; the rowid is the tweet's ID.
+ *
+ * unicode61 folds case and removes diacritics, and the prefix indexes make the prefix queries run
+ * while the user is still typing a word cheaper.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61, prefix = {2, 3},
+        notIndexed = {"profileImageUrl", "createdAtMillis"})
+@Entity
+public class TweetFts {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    public long id;
+
+    @ColumnInfo
+    public String body;
+
+    @ColumnInfo
+    public String name;
+
+    @ColumnInfo
+    public String screenName;
+
+    @ColumnInfo
+    public String profileImageUrl;
+
+    @ColumnInfo
+    public long createdAtMillis;
+
+    // empty constructor for Room
+    public TweetFts() {}
+
+    // the tweet's author must be known
+    public static TweetFts fromTweet(Tweet tweet) {
+        TweetFts row = new TweetFts();
+        row.id = tweet.ID;
+        row.body = tweet.body;
+        row.name = tweet.user.name;
+        row.screenName = tweet.user.screenName;
+        row.profileImageUrl = tweet.user.profileImageUrl;
+        row.createdAtMillis = tweet.createdAtMillis;
+        return row;
+    }
+}
@@ -0,0 +1,32 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface TweetFtsDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertModel(List<TweetFts> rows);
+
+    // which of the given tweets are already indexed
+    @Query("SELECT rowid FROM TweetFts WHERE rowid IN (:ids)")
+    List<Long> indexedIds(List<Long> ids);
+
+    // the newest matches first; query uses the FTS4 MATCH syntax
+    @Query("SELECT rowid, body, name, screenName, profileImageUrl, createdAtMillis, "
+            + "matchinfo(TweetFts, 'pcx') AS matchInfo FROM TweetFts WHERE TweetFts MATCH :query "
+            + "ORDER BY rowid DESC LIMIT :limit")
+    List<SearchResult> search(String query, int limit);
+
+    // keeps only the newest tweets; the subquery is null while there are fewer, so nothing is deleted
+    @Query("DELETE FROM TweetFts WHERE rowid <= (SELECT rowid FROM TweetFts ORDER BY rowid DESC LIMIT 1 OFFSET :limit)")
+    void trimTo(int limit);
+
+    @Query("DELETE FROM TweetFts")
+    void deleteAll();
+}
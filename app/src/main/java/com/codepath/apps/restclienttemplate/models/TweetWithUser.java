@@ -0,0 +1,27 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import androidx.room.Embedded;
+import androidx.room.Relation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A row read back from the timeline cache: a stored tweet joined with its stored author
+public class TweetWithUser {
+
+    @Embedded
+    public Tweet tweet;
+
+    @Relation(parentColumn = "userId", entityColumn = "id")
+    public User user;
+
+    public static List<Tweet> getTweetList(List<TweetWithUser> tweetWithUsers) {
+        List<Tweet> tweets = new ArrayList<>();
+        for (TweetWithUser tweetWithUser : tweetWithUsers) {
+            Tweet tweet = tweetWithUser.tweet;
+            tweet.user = tweetWithUser.user == null ? null : UserMap.intern(tweetWithUser.user);
+            tweets.add(tweet);
+        }
+        return tweets;
+    }
+}
@@ -0,0 +1,68 @@
+package com.codepath.apps.restclienttemplate.models;
+
+/**
+ * Parses the created_at timestamps returned by the Twitter API, which always have the fixed-width
+ * form "EEE MMM dd HH:mm:ss ZZZZZ yyyy" (e.g. "Wed Oct 10 20:19:24 +0000 2018"), into epoch
+ * milliseconds. Fields are read at fixed offsets and the date is converted with plain arithmetic,
+ * so unlike SimpleDateFormat this allocates nothing and is safe to share between threads.
+ */
+public class TwitterDateParser {
+
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final int LENGTH = 30;
+
+    private TwitterDateParser() {}
+
+    public static long parse(String date) {
+        if (date == null || date.length() != LENGTH) {
+            throw new IllegalArgumentException("Unexpected Twitter date: " + date);
+        }
+        int month = 0;
+        for (int i = 0; i < 12; i++) {
+            if (MONTHS.regionMatches(i * 3, date, 4, 3)) {
+                month = i + 1;
+                break;
+            }
+        }
+        if (month == 0) {
+            throw new IllegalArgumentException("Unexpected Twitter date: " + date);
+        }
+        int day = digits(date, 8, 2);
+        int hour = digits(date, 11, 2);
+        int minute = digits(date, 14, 2);
+        int second = digits(date, 17, 2);
+        int offsetMinutes = digits(date, 21, 2) * 60 + digits(date, 23, 2);
+        if (date.charAt(20) == '-') {
+            offsetMinutes = -offsetMinutes;
+        } else if (date.charAt(20) != '+') {
+            throw new IllegalArgumentException("Unexpected Twitter date: " + date);
+        }
+        int year = digits(date, 26, 4);
+
+        long seconds = daysFromCivil(year, month, day) * 86400L
+                + hour * 3600L + minute * 60L + second - offsetMinutes * 60L;
+        return seconds * 1000L;
+    }
+
+    private static int digits(String date, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Unexpected Twitter date: " + date);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // number of days between 1970-01-01 and the given proleptic Gregorian date
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -1,27 +1,85 @@
 package com.codepath.apps.restclienttemplate.models;
 
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.google.gson.stream.JsonReader;
+
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.parceler.Parcel;
 
-// All exceptions thrown by methods in this class are handled by the caller
-@Parcel
+import java.io.IOException;
+
+// All exceptions thrown by methods in this class are handled by the caller.
+// Users are immutable: they are shared by all of the author's tweets (see UserMap), so newer profile
+// data comes as a new User
+@Entity
 public class User {
 
-    public String name;
-    public String screenName;
-    public String profileImageUrl;
+    @PrimaryKey
+    @ColumnInfo
+    public final long id;
+
+    @ColumnInfo
+    public final String name;
+
+    @ColumnInfo
+    public final String screenName;
+
+    @ColumnInfo
+    public final String profileImageUrl;
 
-    // empty constructor for Parceler Library
-    public User() {
+    // also used by Room, which matches the parameters to the columns by name
+    public User(long id, String name, String screenName, String profileImageUrl) {
+        this.id = id;
+        this.name = name;
+        this.screenName = screenName;
+        this.profileImageUrl = profileImageUrl;
+    }
+
+    // responses requested with trim_user only have the author's id
+    public boolean isTrimmed() {
+        return name == null;
     }
 
     public static User fromJson(JSONObject jsonObject) throws JSONException {
-        User user = new User();
-        user.name = jsonObject.getString("name");
-        user.screenName = "@" + jsonObject.getString("screen_name");
-        user.profileImageUrl = jsonObject.getString("profile_image_url_https");
+        return new User(jsonObject.getLong("id"), jsonObject.getString("name"),
+                "@" + jsonObject.getString("screen_name"), jsonObject.getString("profile_image_url_https"));
+    }
+
+    // streaming counterpart of fromJson, used when decoding timeline responses
+    public static User fromJson(JsonReader reader) throws IOException {
+        long id = 0;
+        String name = null;
+        String screenName = null;
+        String profileImageUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextLong();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "screen_name":
+                    screenName = "@" + reader.nextString();
+                    break;
+                case "profile_image_url_https":
+                    profileImageUrl = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        User user = new User(id, name, screenName, profileImageUrl);
+        // a trimmed user has only its id; any other user needs all of its fields
+        boolean complete = user.name != null && user.screenName != null && user.profileImageUrl != null;
+        if (user.id == 0 || (!user.isTrimmed() && !complete)) {
+            throw new IOException("User " + user.id + " is missing its id, name, screen_name or profile image");
+        }
         return user;
     }
 }
-
@@ -0,0 +1,64 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Identity map of the users seen so far, keyed by user id, so that every tweet by the same author
+ * shares a single User object (and its strings) no matter how it was loaded: decoded from a
+ * response, read back from MyDatabase, or filled in for a trimmed tweet. Users are immutable, so
+ * newer profile data replaces the shared object with a new one; tweets loaded before still point to
+ * the old one until they're re-pointed (see TimelinePager).
+ *
+ * Holds at most MAX_USERS users and evicts the least recently used one. It's used from the decoder
+ * thread as well as the main thread, so access is synchronized.
+ */
+public class UserMap {
+
+    private static final int MAX_USERS = 1000;
+
+    // access order, so the eldest entry is the least recently used user
+    private static final Map<Long, User> users = new LinkedHashMap<Long, User>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, User> eldest) {
+            return size() > MAX_USERS;
+        }
+    };
+
+    // the shared User for user's id. A trimmed user is returned as it is if its author isn't known
+    public static synchronized User intern(User user) {
+        User shared = users.get(user.id);
+        if (user.isTrimmed()) {
+            return shared != null ? shared : user;
+        }
+        if (shared == null) {
+            users.put(user.id, user);
+            return user;
+        }
+        boolean sameName = user.name.equals(shared.name);
+        boolean sameScreenName = user.screenName.equals(shared.screenName);
+        boolean sameImage = user.profileImageUrl.equals(shared.profileImageUrl);
+        if (sameName && sameScreenName && sameImage) {
+            return shared;
+        }
+        // unchanged strings stay shared with the old user
+        User changed = new User(user.id, sameName ? shared.name : user.name,
+                sameScreenName ? shared.screenName : user.screenName,
+                sameImage ? shared.profileImageUrl : user.profileImageUrl);
+        users.put(user.id, changed);
+        return changed;
+    }
+
+    public static synchronized User get(long id) {
+        return users.get(id);
+    }
+
+    public static synchronized boolean isEmpty() {
+        return users.isEmpty();
+    }
+
+    // forgets every user, when the user logs out
+    public static synchronized void clear() {
+        users.clear();
+    }
+}
@@ -0,0 +1,426 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.codepath.apps.restclienttemplate.MyDatabase;
+import com.codepath.apps.restclienttemplate.models.PendingAction;
+import com.codepath.apps.restclienttemplate.models.PendingActionDao;
+import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.models.TweetDao;
+import com.codepath.apps.restclienttemplate.models.TweetDecoder;
+import com.codepath.asynchttpclient.callback.TextHttpResponseHandler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.Headers;
+
+/**
+ * Sends the retweets, unretweets, likes and unlikes the user makes. Each action is shown right away
+ * (the listener is told to apply it and the cached tweet is updated), and is stored in MyDatabase
+ * until Twitter has confirmed it, so actions made offline or right before the app is closed are sent
+ * later: SendWorker sends them once the device is online, even if the app has been closed.
+ *
+ * Actions are sent one at a time, in the order they were made. When Twitter can't be reached, or
+ * answers with a rate limit or server error, the action is retried with exponential backoff, up to
+ * MAX_ATTEMPTS times; after that it is undone like after any other error. Undoing
+ * an action that hasn't been sent yet cancels it, so repeated taps on the same button don't each
+ * make a request. Any other error undoes the action locally. Once the last action on a tweet is
+ * confirmed, its count is replaced with the one Twitter returned.
+ *
+ * All methods must be called on the main thread, and the listener is notified on the main thread.
+ */
+public class ActionQueue {
+
+    public interface Listener {
+        // the user's action (or the undoing of one that failed) should be shown on the tweet
+        void onActionApplied(long tweetId, String type);
+
+        // Twitter confirmed the action; count is the tweet's retweet or like count after it
+        void onCountConfirmed(long tweetId, String type, int count);
+
+        void onActionFailed(String message);
+    }
+
+    private static final String TAG = "ActionQueue";
+    private static final long MIN_RETRY_DELAY_MS = 2 * 1000;
+    private static final long MAX_RETRY_DELAY_MS = 5 * 60 * 1000;
+    // attempts, including those made by SendWorker, before an action that keeps failing is dropped
+    private static final int MAX_ATTEMPTS = 10;
+    // error codes meaning the tweet already is in the requested state (or no longer exists), so
+    // there is nothing to undo
+    private static final int NO_STATUS_FOUND = 144;
+    private static final int ALREADY_FAVORITED = 139;
+    private static final int ALREADY_RETWEETED = 327;
+
+    private final Context context;
+    private final TwitterClient client;
+    private final PendingActionDao pendingActionDao;
+    private final TweetDao tweetDao;
+    // database writes are made in order on one thread, so an action is always inserted before it is
+    // updated or deleted
+    private final ExecutorService databaseExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // actions not yet confirmed, oldest first; the first one is being sent or waiting to be retried
+    private final List<PendingAction> pending = new ArrayList<>();
+    private PendingAction sending;
+    private boolean loaded;
+    private boolean waitingToRetry;
+    // set when the user logs out; nothing is sent or stored after that
+    private boolean closed;
+    private Listener listener;
+    private SendWorker.FlushCallback flushCallback;
+
+    private final Runnable retry = new Runnable() {
+        @Override
+        public void run() {
+            waitingToRetry = false;
+            sendNext();
+        }
+    };
+
+    public ActionQueue(Context context, TwitterClient client, MyDatabase myDatabase) {
+        this.context = context.getApplicationContext();
+        this.client = client;
+        this.pendingActionDao = myDatabase.pendingActionDao();
+        this.tweetDao = myDatabase.tweetDao();
+        loadPending();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void toggleRetweet(Tweet tweet) {
+        enqueue(tweet.ID, tweet.retweeted ? PendingAction.UNRETWEET : PendingAction.RETWEET);
+    }
+
+    public void toggleLike(Tweet tweet) {
+        enqueue(tweet.ID, tweet.favorited ? PendingAction.UNLIKE : PendingAction.LIKE);
+    }
+
+    private void enqueue(long tweetId, String type) {
+        if (closed) {
+            return;
+        }
+        apply(tweetId, type);
+
+        PendingAction cancelled = cancelledBy(pending, sending, tweetId, type);
+        if (cancelled != null) {
+            pending.remove(cancelled);
+            delete(cancelled);
+            return;
+        }
+
+        final PendingAction action = new PendingAction(tweetId, type);
+        pending.add(action);
+        SendWorker.schedule(context);
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                action.id = pendingActionDao.insertModel(action);
+            }
+        });
+        sendNext();
+    }
+
+    // Fetched tweets still have Twitter's state from before the actions that aren't confirmed yet;
+    // this shows those actions on them, so a refresh doesn't undo them on screen and in the cache,
+    // and the next tap toggles from the state the user sees. Tweets without pending actions are
+    // returned as they are
+    public List<Tweet> applyPending(List<Tweet> tweets) {
+        if (pending.isEmpty()) {
+            return tweets;
+        }
+        List<Tweet> applied = new ArrayList<>(tweets.size());
+        for (Tweet tweet : tweets) {
+            for (PendingAction action : pending) {
+                if (action.tweetId == tweet.ID) {
+                    tweet = tweet.withAction(action.type);
+                }
+            }
+            applied.add(tweet);
+        }
+        return applied;
+    }
+
+    // actions saved during an earlier session go before any made since the app started
+    private void loadPending() {
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<PendingAction> stored = pendingActionDao.all();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (closed) {
+                            return;
+                        }
+                        pending.addAll(0, stored);
+                        loaded = true;
+                        if (!stored.isEmpty()) {
+                            // they may have been made by a version of the app without SendWorker
+                            SendWorker.schedule(context);
+                        }
+                        // tweets fetched before the stored actions were read still show the state
+                        // from before them
+                        for (PendingAction action : stored) {
+                            apply(action.tweetId, action.type);
+                        }
+                        sendNext();
+                    }
+                });
+            }
+        });
+    }
+
+    private void sendNext() {
+        if (!loaded || sending != null || waitingToRetry || pending.isEmpty()) {
+            notifyFlushed();
+            return;
+        }
+        final PendingAction action = pending.get(0);
+        sending = action;
+        send(action, new TextHttpResponseHandler() {
+            @Override
+            public void onSuccess(int statusCode, Headers headers, String response) {
+                if (closed) {
+                    return;
+                }
+                sending = null;
+                pending.remove(action);
+                delete(action);
+                confirm(action, response);
+                sendNext();
+            }
+
+            @Override
+            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+                if (closed) {
+                    return;
+                }
+                sending = null;
+                if (statusCode == 0 || statusCode == 429 || statusCode >= 500) {
+                    // offline, rate limited or a server error: try the same action again later,
+                    // unless it has failed too often already
+                    action.attempts++;
+                    if (action.attempts < MAX_ATTEMPTS) {
+                        update(action);
+                        scheduleRetry(action.attempts);
+                        return;
+                    }
+                }
+                pending.remove(action);
+                delete(action);
+                int errorCode = errorCode(response);
+                if (errorCode != NO_STATUS_FOUND && errorCode != ALREADY_FAVORITED && errorCode != ALREADY_RETWEETED) {
+                    apply(action.tweetId, PendingAction.inverse(action.type));
+                    if (listener != null) {
+                        listener.onActionFailed(failureMessage(action.type));
+                    }
+                    Log.e(TAG, "unable to " + action.type + " " + action.tweetId + ": " + response, throwable);
+                }
+                sendNext();
+            }
+        });
+    }
+
+    private void send(PendingAction action, TextHttpResponseHandler handler) {
+        String tweetId = String.valueOf(action.tweetId);
+        switch (action.type) {
+            case PendingAction.RETWEET:
+                client.retweet(tweetId, handler);
+                break;
+            case PendingAction.UNRETWEET:
+                client.unretweet(tweetId, handler);
+                break;
+            case PendingAction.LIKE:
+                client.like(tweetId, handler);
+                break;
+            default:
+                client.unlike(tweetId, handler);
+                break;
+        }
+    }
+
+    // waits twice as long after each failed attempt, up to MAX_RETRY_DELAY_MS, and has SendWorker
+    // try again once online in case the app is closed before then
+    private void scheduleRetry(int attempts) {
+        long delay = MIN_RETRY_DELAY_MS << Math.min(attempts - 1, 16);
+        waitingToRetry = true;
+        mainHandler.postDelayed(retry, Math.min(delay, MAX_RETRY_DELAY_MS));
+        SendWorker.schedule(context);
+        notifyFlushed();
+    }
+
+    // Twitter's count replaces the optimistic one, unless the user has acted on the tweet again since
+    private void confirm(final PendingAction action, String response) {
+        if (lastPending(pending, action.tweetId, action.type) != null) {
+            return;
+        }
+        TweetDecoder.decodeTweet(response, new TweetDecoder.Callback() {
+            @Override
+            public void onDecoded(List<Tweet> tweets) {
+                if (closed || lastPending(pending, action.tweetId, action.type) != null) {
+                    return;
+                }
+                Tweet tweet = tweets.get(0);
+                final boolean retweet = PendingAction.isRetweet(action.type);
+                final int count = retweet ? tweet.RTCount : tweet.likeCount;
+                databaseExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (retweet) {
+                            tweetDao.updateRetweetCount(action.tweetId, count, action.type.equals(PendingAction.RETWEET));
+                        } else {
+                            tweetDao.updateLikeCount(action.tweetId, count, action.type.equals(PendingAction.LIKE));
+                        }
+                    }
+                });
+                if (listener != null) {
+                    listener.onCountConfirmed(action.tweetId, action.type, count);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "unable to parse " + action.type + " response", e);
+            }
+        });
+    }
+
+    // shows the action on the displayed and the cached tweet
+    private void apply(final long tweetId, final String type) {
+        if (listener != null) {
+            listener.onActionApplied(tweetId, type);
+        }
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (PendingAction.isRetweet(type)) {
+                    tweetDao.setRetweeted(tweetId, type.equals(PendingAction.RETWEET));
+                } else {
+                    tweetDao.setFavorited(tweetId, type.equals(PendingAction.LIKE));
+                }
+            }
+        });
+    }
+
+    // Drops the actions of the account that is logging out, in memory and, after the writes still
+    // queued, in MyDatabase. Responses to a request already sent are ignored
+    public void close() {
+        closed = true;
+        listener = null;
+        pending.clear();
+        mainHandler.removeCallbacks(retry);
+        if (flushCallback != null) {
+            flushCallback.onFlushed(true);
+            flushCallback = null;
+        }
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                pendingActionDao.deleteAll();
+            }
+        });
+    }
+
+    // sends what is queued right away rather than after the retry delay; SendWorker calls this once
+    // the device is online, and is called back when nothing is being sent any more
+    void flush(SendWorker.FlushCallback callback) {
+        if (closed) {
+            callback.onFlushed(true);
+            return;
+        }
+        flushCallback = callback;
+        if (waitingToRetry) {
+            mainHandler.removeCallbacks(retry);
+            waitingToRetry = false;
+        }
+        sendNext();
+    }
+
+    // calls back SendWorker once nothing is being sent: the queue is empty, or waiting to be retried
+    private void notifyFlushed() {
+        if (flushCallback == null || !loaded || sending != null) {
+            return;
+        }
+        if (pending.isEmpty() || waitingToRetry) {
+            SendWorker.FlushCallback callback = flushCallback;
+            flushCallback = null;
+            callback.onFlushed(pending.isEmpty());
+        }
+    }
+
+    // A tap that undoes an action which hasn't been sent yet cancels it instead of sending both: the
+    // pending action the new one of the given type cancels, or null if it has to be sent. The action
+    // being sent can't be taken back any more
+    static PendingAction cancelledBy(List<PendingAction> pending, PendingAction sending, long tweetId, String type) {
+        PendingAction last = lastPending(pending, tweetId, type);
+        if (last != null && last != sending && last.type.equals(PendingAction.inverse(type))) {
+            return last;
+        }
+        return null;
+    }
+
+    // the newest pending retweet/unretweet (or like/unlike, depending on type) of the tweet
+    static PendingAction lastPending(List<PendingAction> pending, long tweetId, String type) {
+        boolean retweet = PendingAction.isRetweet(type);
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            PendingAction action = pending.get(i);
+            if (action.tweetId == tweetId && PendingAction.isRetweet(action.type) == retweet) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    private void update(final PendingAction action) {
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                pendingActionDao.updateModel(action);
+            }
+        });
+    }
+
+    private void delete(final PendingAction action) {
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                pendingActionDao.deleteModel(action);
+            }
+        });
+    }
+
+    // the code of the first error in a Twitter error response, or 0 if there is none
+    private static int errorCode(String response) {
+        try {
+            return new JSONObject(response).getJSONArray("errors").getJSONObject(0).getInt("code");
+        } catch (JSONException | NullPointerException e) {
+            return 0;
+        }
+    }
+
+    private static String failureMessage(String type) {
+        switch (type) {
+            case PendingAction.RETWEET:
+                return "Unable to retweet";
+            case PendingAction.UNRETWEET:
+                return "Unable to undo retweet";
+            case PendingAction.LIKE:
+                return "Unable to like";
+            default:
+                return "Unable to undo like";
+        }
+    }
+}
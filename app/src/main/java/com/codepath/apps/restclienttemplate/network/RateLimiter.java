@@ -0,0 +1,93 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.os.SystemClock;
+
+import com.codepath.asynchttpclient.callback.TextHttpResponseHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.Headers;
+
+/**
+ * Tracks how many requests TwitterClient may still make to each endpoint in the current rate limit
+ * window, from the x-rate-limit-remaining and x-rate-limit-reset headers Twitter sends back (and from
+ * 429 responses, which don't always have them).
+ *
+ * Requests made while the count isn't known yet are always allowed. Once it is, each request sent
+ * counts against it until the next response reports the real value, and the last few requests of a
+ * window are kept for requests the user is waiting for rather than for prefetching.
+ *
+ * Must only be used on the main thread.
+ */
+class RateLimiter {
+
+    // requests left in a window that prefetching may not use
+    private static final int PREFETCH_RESERVE = 3;
+    // how long to wait after a 429 that doesn't say when the window resets
+    private static final long DEFAULT_RETRY_AFTER_MS = 60 * 1000;
+
+    private static class Budget {
+        int remaining;
+        long resetAt;
+    }
+
+    private final Map<String, Budget> budgets = new HashMap<>();
+
+    // how long to wait before a request to endpoint may be sent, or 0 if it may be sent now
+    long waitTime(String endpoint, boolean prefetch) {
+        Budget budget = budgets.get(endpoint);
+        long now = SystemClock.elapsedRealtime();
+        if (budget == null || now >= budget.resetAt) {
+            return 0;
+        }
+        int reserve = prefetch ? PREFETCH_RESERVE : 0;
+        return budget.remaining > reserve ? 0 : budget.resetAt - now;
+    }
+
+    // counts a request about to be sent, and returns a handler that records the budget reported in
+    // its response before passing it on
+    TextHttpResponseHandler track(final String endpoint, final TextHttpResponseHandler handler) {
+        Budget budget = budgets.get(endpoint);
+        if (budget != null && budget.remaining > 0) {
+            budget.remaining--;
+        }
+        return new TextHttpResponseHandler() {
+            @Override
+            public void onSuccess(int statusCode, Headers headers, String response) {
+                update(endpoint, statusCode, headers);
+                handler.onSuccess(statusCode, headers, response);
+            }
+
+            @Override
+            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+                update(endpoint, statusCode, headers);
+                handler.onFailure(statusCode, headers, response, throwable);
+            }
+        };
+    }
+
+    private void update(String endpoint, int statusCode, Headers headers) {
+        String remaining = headers == null ? null : headers.get("x-rate-limit-remaining");
+        String reset = headers == null ? null : headers.get("x-rate-limit-reset");
+        if (remaining == null || reset == null) {
+            if (statusCode == 429) {
+                Budget budget = new Budget();
+                budget.resetAt = SystemClock.elapsedRealtime() + DEFAULT_RETRY_AFTER_MS;
+                budgets.put(endpoint, budget);
+            }
+            return;
+        }
+        try {
+            Budget budget = new Budget();
+            budget.remaining = statusCode == 429 ? 0 : Integer.parseInt(remaining);
+            // the reset time is in epoch seconds; it's kept on the elapsed realtime clock so changes
+            // to the wall clock don't affect it
+            long resetInMs = Long.parseLong(reset) * 1000 - System.currentTimeMillis();
+            budget.resetAt = SystemClock.elapsedRealtime() + Math.max(resetInMs, 0);
+            budgets.put(endpoint, budget);
+        } catch (NumberFormatException e) {
+            // ignore malformed headers, the budget is simply unknown
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Headers;
+
+/**
+ * A small in-memory cache of response bodies for TwitterClient, keyed by the request's parameters.
+ * It holds at most maxEntries responses and evicts the least recently used one when full.
+ *
+ * A response younger than ttlMs is fresh and can be reused without a request; an older one is never
+ * returned, and is evicted as newer responses are stored.
+ *
+ * Must only be used on the main thread.
+ */
+class ResponseCache {
+
+    static class Entry {
+        final String body;
+        final Headers headers;
+        final long storedAt;
+
+        Entry(String body, Headers headers, long storedAt) {
+            this.body = body;
+            this.headers = headers;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final long ttlMs;
+    private final Map<String, Entry> entries;
+
+    ResponseCache(final int maxEntries, long ttlMs) {
+        this.ttlMs = ttlMs;
+        // access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // the stored response for key, or null if there is none or it isn't fresh any more
+    @Nullable
+    Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || SystemClock.elapsedRealtime() - entry.storedAt >= ttlMs) {
+            return null;
+        }
+        return entry;
+    }
+
+    void put(String key, String body, Headers headers) {
+        entries.put(key, new Entry(body, headers, SystemClock.elapsedRealtime()));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,204 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+
+import com.codepath.apps.restclienttemplate.Metrics;
+import com.codepath.apps.restclienttemplate.MyDatabase;
+import com.codepath.apps.restclienttemplate.models.SearchResult;
+import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.models.TweetFts;
+import com.codepath.apps.restclienttemplate.models.TweetFtsDao;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Full-text search over the tweets the app has loaded. Every timeline page is added to an FTS4 table
+ * in MyDatabase (TweetFts) as it arrives, indexing the tweet's text and its author's name and screen
+ * name. The index holds up to MAX_INDEXED_TWEETS tweets, far more than the timeline cache, and the
+ * oldest ones are dropped once it is full.
+ *
+ * Indexing is incremental: only tweets that aren't indexed yet are written, one page per transaction,
+ * on a background thread of its own. Searches run on another background thread, so typing never
+ * waits for a page being indexed.
+ *
+ * Each word typed matches any word starting with it, and all words have to match. Of the newest
+ * MAX_CANDIDATES matches, the MAX_RESULTS best are returned: a match in a rare word counts more than
+ * one in a common word, and a match in the author's name more than one in the text.
+ *
+ * All methods must be called on the main thread; callbacks are made on the main thread.
+ */
+public class SearchIndex {
+
+    public interface Callback {
+        // called with the results, best first; results of a search that was replaced by a newer one
+        // are never delivered
+        void onResults(List<SearchResult> results);
+    }
+
+    private static final int MAX_INDEXED_TWEETS = 50 * 1000;
+    // the index is trimmed every TRIM_EVERY pages rather than after each one
+    private static final int TRIM_EVERY = 20;
+    private static final int MAX_CANDIDATES = 500;
+    private static final int MAX_RESULTS = 50;
+    // weight of a match in each column of TweetFts: body, name, screenName; the columns that
+    // aren't indexed never match
+    private static final double[] COLUMN_WEIGHTS = {1.0, 2.0, 2.0};
+
+    private final MyDatabase myDatabase;
+    private final TweetFtsDao tweetFtsDao;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    // only used on indexExecutor
+    private int pagesIndexed;
+    // incremented on the main thread with every search, so older searches can be skipped
+    private volatile int latestSearch;
+
+    public SearchIndex(MyDatabase myDatabase) {
+        this.myDatabase = myDatabase;
+        this.tweetFtsDao = myDatabase.tweetFtsDao();
+    }
+
+    // indexes the tweets that aren't indexed yet; their authors must have been filled in
+    public void add(List<Tweet> tweets) {
+        final List<Tweet> page = new ArrayList<>(tweets);
+        indexExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Long> ids = new ArrayList<>(page.size());
+                for (Tweet tweet : page) {
+                    ids.add(tweet.ID);
+                }
+                Set<Long> indexed = new HashSet<>(tweetFtsDao.indexedIds(ids));
+                final List<TweetFts> rows = new ArrayList<>(page.size());
+                for (Tweet tweet : page) {
+                    if (tweet.user != null && !indexed.contains(tweet.ID)) {
+                        rows.add(TweetFts.fromTweet(tweet));
+                    }
+                }
+                if (rows.isEmpty()) {
+                    return;
+                }
+                final boolean trim = ++pagesIndexed % TRIM_EVERY == 0;
+                myDatabase.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        tweetFtsDao.insertModel(rows);
+                        if (trim) {
+                            tweetFtsDao.trimTo(MAX_INDEXED_TWEETS);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // drops every indexed tweet, after the pages that are still being indexed
+    public void clear() {
+        indexExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                tweetFtsDao.deleteAll();
+            }
+        });
+    }
+
+    public void search(String text, final Callback callback) {
+        final int search = ++latestSearch;
+        final String query = toMatchQuery(text);
+        if (query.isEmpty()) {
+            callback.onResults(Collections.<SearchResult>emptyList());
+            return;
+        }
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // the user typed on while this was queued
+                if (search != latestSearch) {
+                    return;
+                }
+                Trace.beginSection("SearchIndex.search");
+                long start = System.nanoTime();
+                final List<SearchResult> results = rank(tweetFtsDao.search(query, MAX_CANDIDATES));
+                Metrics.record(Metrics.SEARCH_US, (System.nanoTime() - start) / 1000);
+                Trace.endSection();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (search == latestSearch) {
+                            callback.onResults(results);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // Turns what the user typed into an FTS4 query: every run of letters and digits becomes a quoted
+    // prefix term, so punctuation, quotes and words like OR and NOT are never read as query syntax.
+    // Empty if there is nothing to search for.
+    static String toMatchQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                i += Character.charCount(codePoint);
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.codePointAt(i))) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append('"').append(text, start, i).append("*\"");
+        }
+        return query.toString();
+    }
+
+    // Scores each result from its matchinfo 'pcx' blob: the number of phrases p, the number of
+    // columns c, then for every phrase and column the hits in this row, the hits in all rows and the
+    // rows with a hit. A hit counts in proportion to how rare it is across the index.
+    private static List<SearchResult> rank(List<SearchResult> candidates) {
+        for (SearchResult result : candidates) {
+            IntBuffer matchInfo = ByteBuffer.wrap(result.matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+            int phrases = matchInfo.get(0);
+            int columns = matchInfo.get(1);
+            double score = 0;
+            for (int phrase = 0; phrase < phrases; phrase++) {
+                for (int column = 0; column < columns && column < COLUMN_WEIGHTS.length; column++) {
+                    int offset = 2 + 3 * (column + phrase * columns);
+                    int hitsThisRow = matchInfo.get(offset);
+                    int hitsAllRows = matchInfo.get(offset + 1);
+                    if (hitsThisRow > 0) {
+                        score += COLUMN_WEIGHTS[column] * hitsThisRow / hitsAllRows;
+                    }
+                }
+            }
+            result.score = score;
+            result.matchInfo = null;
+        }
+        // candidates are newest first, and the sort is stable, so equal scores stay newest first
+        Collections.sort(candidates, new Comparator<SearchResult>() {
+            @Override
+            public int compare(SearchResult a, SearchResult b) {
+                return Double.compare(b.score, a.score);
+            }
+        });
+        return candidates.size() > MAX_RESULTS ? new ArrayList<>(candidates.subList(0, MAX_RESULTS)) : candidates;
+    }
+}
@@ -0,0 +1,98 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the queued tweets (TweetSender) and actions (ActionQueue) once the device is online, even if
+ * the app was closed or its process killed in the meantime. Both queues schedule this worker whenever
+ * something is queued or a send fails and should be retried; WorkManager runs it when there is a
+ * network connection, starting the app's process if needed, and keeps retrying it with exponential
+ * backoff until both queues are empty.
+ *
+ * While the app is running the queues also send on their own; this worker only asks them to try
+ * right away and waits until they're done.
+ */
+public class SendWorker extends Worker {
+
+    interface FlushCallback {
+        // called on the main thread once nothing is being sent; empty is false if something is
+        // still queued, waiting to be retried
+        void onFlushed(boolean empty);
+    }
+
+    private static final String NAME = "send";
+    private static final long MIN_BACKOFF_SECONDS = 30;
+    // WorkManager stops a worker after 10 minutes
+    private static final long MAX_WAIT_MINUTES = 9;
+
+    public SendWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    // does nothing if the worker is already scheduled or running
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SendWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, MIN_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    public static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(NAME);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        final TwitterApp app = (TwitterApp) getApplicationContext();
+        final CountDownLatch flushed = new CountDownLatch(2);
+        final boolean[] empty = new boolean[2];
+        // the queues must only be used on the main thread
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                app.getTweetSender().flush(new FlushCallback() {
+                    @Override
+                    public void onFlushed(boolean tweetsSent) {
+                        empty[0] = tweetsSent;
+                        flushed.countDown();
+                    }
+                });
+                app.getActionQueue().flush(new FlushCallback() {
+                    @Override
+                    public void onFlushed(boolean actionsSent) {
+                        empty[1] = actionsSent;
+                        flushed.countDown();
+                    }
+                });
+            }
+        });
+        try {
+            if (!flushed.await(MAX_WAIT_MINUTES, TimeUnit.MINUTES)) {
+                return Result.retry();
+            }
+        } catch (InterruptedException e) {
+            return Result.retry();
+        }
+        return empty[0] && empty[1] ? Result.success() : Result.retry();
+    }
+}
@@ -0,0 +1,683 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.codepath.apps.restclienttemplate.MyDatabase;
+import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.models.TweetDao;
+import com.codepath.apps.restclienttemplate.models.TweetDecoder;
+import com.codepath.apps.restclienttemplate.models.TweetWithUser;
+import com.codepath.apps.restclienttemplate.models.User;
+import com.codepath.apps.restclienttemplate.models.UserMap;
+import com.codepath.asynchttpclient.callback.TextHttpResponseHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.Headers;
+
+/**
+ * Owns the paging state of the home timeline: the loaded tweets (newest first), the since_id and
+ * max_id cursors used to request newer and older pages, and the gaps between loaded segments.
+ *
+ * A gap is recorded on the tweet just above it (Tweet.gapBelow) whenever a page is inserted without
+ * knowing that it connects to the next older loaded tweet, e.g. a refresh that returned more than
+ * MAX_REFRESH_PAGES pages, or a fresh first page on top of the cached timeline. Gaps are filled
+ * lazily with fillGap() when the user asks for the missing tweets.
+ *
+ * Only a window of at most MAX_WINDOW_TWEETS consecutive tweets is kept in memory. When a load
+ * makes it larger, the tweets farthest from where it grew are evicted; they are still cached in
+ * MyDatabase and are read back from there when the user scrolls to them again (loadMore() and
+ * loadNewer()). Only once the cache runs out is the network asked for older tweets.
+ *
+ * Pages fetched from Twitter show the retweets and likes still queued in ActionQueue, and are added
+ * to the SearchIndex.
+ *
+ * Tweets the user wrote that are still being sent (see TweetSender) are shown above the timeline.
+ *
+ * All methods must be called on the main thread, and the listener is notified on the main thread.
+ * Every change to a loaded tweet replaces it with a copy, so the snapshots handed to the listener
+ * can be diffed against each other.
+ */
+public class TimelinePager {
+
+    public interface Listener {
+        // called with a new snapshot of the timeline whenever it changed
+        void onTimelineChanged(List<Tweet> timeline);
+
+        // called with each page as soon as it is decoded, before it is merged into the timeline
+        void onPageLoaded(List<Tweet> page);
+
+        void onLoadFailed(String message, @Nullable Throwable throwable);
+
+        // called after tweets were evicted from either end of the window
+        void onWindowTrimmed();
+    }
+
+    public interface LoadMoreCallback {
+        // the older page was added
+        void onLoaded();
+
+        // nothing was added: the request failed, or a prefetch was dropped to save the rate limit
+        void onFailed();
+    }
+
+    private static final int NUM_CACHED_TWEETS = 40 * TwitterClient.NUM_LOAD_TWEETS;
+    private static final int MAX_WINDOW_TWEETS = 8 * TwitterClient.NUM_LOAD_TWEETS;
+    private static final int MAX_REFRESH_PAGES = 4;
+    private static final String STATE_SINCE_ID = "sinceId";
+    private static final String STATE_NEWEST_ID = "newestId";
+    private static final String STATE_OLDEST_ID = "oldestId";
+    private static final String STATE_EVICTED_ABOVE = "evictedAbove";
+    private static final String STATE_EVICTED_BELOW = "evictedBelow";
+
+    private final TwitterClient client;
+    private final MyDatabase myDatabase;
+    private final TweetDao tweetDao;
+    private final UserCache userCache;
+    private final TweetRepository tweetRepository;
+    private final SearchIndex searchIndex;
+    private final ActionQueue actionQueue;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final List<Tweet> tweets = new ArrayList<>();
+    // tweets the user wrote that are still being sent, shown above the timeline
+    private List<Tweet> pendingTweets = Collections.emptyList();
+    // newest ID received from home_timeline; tweets posted by the user don't move it
+    private long sinceId;
+    // whether cached tweets newer / older than the window were evicted (or not loaded yet)
+    private boolean evictedAbove;
+    private boolean evictedBelow;
+    private boolean loadingMore;
+    private boolean loadingNewer;
+    private boolean refreshing;
+    private final Set<Long> fillingGaps = new HashSet<>();
+
+    public TimelinePager(TwitterClient client, MyDatabase myDatabase, UserCache userCache,
+                         TweetRepository tweetRepository, SearchIndex searchIndex, ActionQueue actionQueue,
+                         Listener listener) {
+        this.client = client;
+        this.myDatabase = myDatabase;
+        this.tweetDao = myDatabase.tweetDao();
+        this.userCache = userCache;
+        this.tweetRepository = tweetRepository;
+        this.searchIndex = searchIndex;
+        this.actionQueue = actionQueue;
+        this.listener = listener;
+    }
+
+    // only the cursors are saved; the window itself is read back from the cache by restoreState()
+    public void saveState(Bundle outState) {
+        outState.putLong(STATE_SINCE_ID, sinceId);
+        if (!tweets.isEmpty()) {
+            outState.putLong(STATE_NEWEST_ID, tweets.get(0).ID);
+            outState.putLong(STATE_OLDEST_ID, tweets.get(tweets.size() - 1).ID);
+        }
+        outState.putBoolean(STATE_EVICTED_ABOVE, evictedAbove);
+        outState.putBoolean(STATE_EVICTED_BELOW, evictedBelow);
+    }
+
+    // shows the same window again after the activity was recreated, then fetches any newer tweets
+    // unless the user had scrolled away from the top
+    public void restoreState(Bundle savedState, final Runnable onFinished) {
+        final long newestId = savedState.getLong(STATE_NEWEST_ID);
+        final long oldestId = savedState.getLong(STATE_OLDEST_ID);
+        if (newestId == 0) {
+            loadCached();
+            loadInitial(onFinished);
+            return;
+        }
+        sinceId = savedState.getLong(STATE_SINCE_ID);
+        evictedAbove = savedState.getBoolean(STATE_EVICTED_ABOVE);
+        evictedBelow = savedState.getBoolean(STATE_EVICTED_BELOW);
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Tweet> window = TweetWithUser.getTweetList(tweetDao.between(newestId, oldestId));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (window.isEmpty()) {
+                            // the cache was cleared in the meantime, so start over
+                            sinceId = 0;
+                            evictedAbove = false;
+                            evictedBelow = false;
+                            loadCached();
+                            loadInitial(onFinished);
+                            return;
+                        }
+                        insertCached(window);
+                        notifyChanged();
+                        if (evictedAbove) {
+                            onFinished.run();
+                        } else {
+                            refresh(onFinished);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // display the tweets saved during the last session without waiting for the network
+    public void loadCached() {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Tweet> cachedTweets = TweetWithUser.getTweetList(tweetDao.recentItems(MAX_WINDOW_TWEETS));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!cachedTweets.isEmpty()) {
+                            insertCached(cachedTweets);
+                            if (cachedTweets.size() == MAX_WINDOW_TWEETS) {
+                                evictedBelow = true;
+                            }
+                            trimWindow(0);
+                            notifyChanged();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // load the newest page of the timeline
+    public void loadInitial(final Runnable onFinished) {
+        fetch(0, 0, false, new PageCallback() {
+            @Override
+            public void onPage(List<Tweet> page) {
+                insertRun(page, false, page.size() < TwitterClient.NUM_LOAD_TWEETS);
+                trimWindow(0);
+                notifyChanged();
+                onFinished.run();
+            }
+
+            @Override
+            public void onFailed() {
+                onFinished.run();
+            }
+        }, "Unable to load timeline");
+    }
+
+    // fetch only the tweets newer than since_id and insert them above the loaded timeline
+    public void refresh(final Runnable onFinished) {
+        if (sinceId == 0) {
+            loadInitial(onFinished);
+            return;
+        }
+        if (refreshing) {
+            return;
+        }
+        refreshing = true;
+        if (evictedAbove) {
+            // newer tweets go on top of the newest cached ones, so the window moves back there first
+            reloadNewest(new Runnable() {
+                @Override
+                public void run() {
+                    refreshPage(sinceId, 0, 1, onFinished);
+                }
+            });
+            return;
+        }
+        refreshPage(sinceId, 0, 1, onFinished);
+    }
+
+    // Twitter returns the newest tweets first, so if more than a page arrived since since_id, the
+    // following pages are requested (each ending right below the previous one) until a partial page
+    // shows that everything newer than since_id has been received, or MAX_REFRESH_PAGES is reached
+    private void refreshPage(final long since, final long max, final int page, final Runnable onFinished) {
+        fetch(max, since, false, new PageCallback() {
+            @Override
+            public void onPage(List<Tweet> newTweets) {
+                boolean complete = newTweets.size() < TwitterClient.NUM_LOAD_TWEETS;
+                insertRun(newTweets, max != 0, complete);
+                trimWindow(0);
+                notifyChanged();
+                if (!complete && page < MAX_REFRESH_PAGES) {
+                    refreshPage(since, newTweets.get(newTweets.size() - 1).ID - 1, page + 1, onFinished);
+                    return;
+                }
+                refreshing = false;
+                onFinished.run();
+            }
+
+            @Override
+            public void onFailed() {
+                refreshing = false;
+                onFinished.run();
+            }
+        }, "Error: Unable to refresh timeline");
+    }
+
+    // older tweets have lower IDs; this loads the page right below the oldest tweet in the window,
+    // from the cache if it was evicted, otherwise from Twitter. prefetch is set when the page is
+    // loaded ahead of the user reaching the end of the timeline, rather than because they're waiting
+    // for it
+    public void loadMore(final boolean prefetch, final LoadMoreCallback callback) {
+        if (tweets.isEmpty() || loadingMore) {
+            return;
+        }
+        loadingMore = true;
+        final long oldest = tweets.get(tweets.size() - 1).ID;
+        if (evictedBelow) {
+            loadCachedOlder(oldest, prefetch, callback);
+            return;
+        }
+        // avoid duplicate tweets since max_id is the ID of a currently displayed Tweet
+        fetch(oldest - 1, 0, prefetch, new PageCallback() {
+            @Override
+            public void onPage(List<Tweet> page) {
+                loadingMore = false;
+                insertRun(page, true, false);
+                trimWindow(tweets.size() - 1);
+                notifyChanged();
+                callback.onLoaded();
+            }
+
+            @Override
+            public void onFailed() {
+                loadingMore = false;
+                callback.onFailed();
+            }
+        }, "Error: Unable to load more tweets");
+    }
+
+    // request the tweets missing between gapTweet and the next older loaded tweet
+    public void fillGap(Tweet gapTweet) {
+        int position = indexOf(gapTweet.ID);
+        if (position < 0 || !tweets.get(position).gapBelow || !fillingGaps.add(gapTweet.ID)) {
+            return;
+        }
+        final long gapId = gapTweet.ID;
+        long olderId = position + 1 < tweets.size() ? tweets.get(position + 1).ID : 0;
+        fetch(gapId - 1, olderId, false, new PageCallback() {
+            @Override
+            public void onPage(List<Tweet> page) {
+                fillingGaps.remove(gapId);
+                if (page.isEmpty()) {
+                    // nothing was missing after all
+                    clearGap(gapId);
+                } else {
+                    insertRun(page, true, page.size() < TwitterClient.NUM_LOAD_TWEETS);
+                    trimWindow(indexOf(gapId));
+                }
+                notifyChanged();
+            }
+
+            @Override
+            public void onFailed() {
+                fillingGaps.remove(gapId);
+            }
+        }, "Error: Unable to load missing tweets");
+    }
+
+    // a tweet the user just published goes on top, but doesn't move the cursors: the next refresh
+    // still asks for everything since the newest timeline tweet, so tweets posted by others in the
+    // meantime aren't skipped. It isn't cached either, for the same reason; the refresh that returns
+    // it from home_timeline saves it
+    public void addPostedTweet(final Tweet tweet) {
+        if (evictedAbove) {
+            reloadNewest(new Runnable() {
+                @Override
+                public void run() {
+                    addPostedTweet(tweet);
+                }
+            });
+            return;
+        }
+        int position = 0;
+        while (position < tweets.size() && tweets.get(position).ID > tweet.ID) {
+            position++;
+        }
+        if (position < tweets.size() && tweets.get(position).ID == tweet.ID) {
+            tweets.set(position, tweet);
+        } else {
+            tweets.add(position, tweet);
+        }
+        trimWindow(0);
+        notifyChanged();
+    }
+
+    // reads back the cached page right above the window, when the user scrolls up to it
+    public void loadNewer() {
+        if (!evictedAbove || loadingNewer || tweets.isEmpty()) {
+            return;
+        }
+        loadingNewer = true;
+        final long newest = tweets.get(0).ID;
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Tweet> newer = TweetWithUser.getTweetList(tweetDao.newerThan(newest, TwitterClient.NUM_LOAD_TWEETS));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        loadingNewer = false;
+                        // the window moved while the cache was read
+                        if (tweets.isEmpty() || tweets.get(0).ID != newest) {
+                            return;
+                        }
+                        if (newer.size() < TwitterClient.NUM_LOAD_TWEETS) {
+                            evictedAbove = false;
+                        }
+                        // read oldest first, so they're added in reverse
+                        for (Tweet tweet : newer) {
+                            tweets.add(0, tweet);
+                        }
+                        trimWindow(0);
+                        notifyChanged();
+                    }
+                });
+            }
+        });
+    }
+
+    private void loadCachedOlder(final long oldest, final boolean prefetch, final LoadMoreCallback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Tweet> older = TweetWithUser.getTweetList(tweetDao.olderThan(oldest, TwitterClient.NUM_LOAD_TWEETS));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        loadingMore = false;
+                        // the window moved while the cache was read
+                        if (tweets.isEmpty() || tweets.get(tweets.size() - 1).ID != oldest) {
+                            callback.onFailed();
+                            return;
+                        }
+                        if (older.size() < TwitterClient.NUM_LOAD_TWEETS) {
+                            evictedBelow = false;
+                        }
+                        if (older.isEmpty()) {
+                            // the cache ends here, continue from Twitter
+                            loadMore(prefetch, callback);
+                            return;
+                        }
+                        tweets.addAll(older);
+                        trimWindow(tweets.size() - 1);
+                        notifyChanged();
+                        callback.onLoaded();
+                    }
+                });
+            }
+        });
+    }
+
+    // replaces the window with the newest cached tweets
+    private void reloadNewest(final Runnable then) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Tweet> newest = TweetWithUser.getTweetList(tweetDao.recentItems(TwitterClient.NUM_LOAD_TWEETS));
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        tweets.clear();
+                        tweets.addAll(newest);
+                        evictedAbove = false;
+                        evictedBelow = true;
+                        listener.onWindowTrimmed();
+                        notifyChanged();
+                        then.run();
+                    }
+                });
+            }
+        });
+    }
+
+    // evicts the tweets beyond MAX_WINDOW_TWEETS from the end farther away from position anchor,
+    // which is where the window just grew
+    private void trimWindow(int anchor) {
+        int excess = tweets.size() - MAX_WINDOW_TWEETS;
+        if (excess <= 0) {
+            return;
+        }
+        if (anchor < tweets.size() / 2) {
+            tweets.subList(MAX_WINDOW_TWEETS, tweets.size()).clear();
+            evictedBelow = true;
+        } else {
+            tweets.subList(0, excess).clear();
+            evictedAbove = true;
+        }
+        listener.onWindowTrimmed();
+    }
+
+    // shows a retweet, like or their undoing on a loaded tweet; ActionQueue updates the cached copy
+    public void applyAction(long tweetId, String type) {
+        int position = indexOf(tweetId);
+        if (position >= 0) {
+            tweets.set(position, tweets.get(position).withAction(type));
+            notifyChanged();
+        }
+    }
+
+    public void confirmCount(long tweetId, String type, int count) {
+        int position = indexOf(tweetId);
+        if (position >= 0) {
+            tweets.set(position, tweets.get(position).withConfirmedCount(type, count));
+            notifyChanged();
+        }
+    }
+
+    public void setPendingTweets(List<Tweet> pendingTweets) {
+        this.pendingTweets = pendingTweets;
+        notifyChanged();
+    }
+
+    // the pending tweets followed by the timeline
+    public List<Tweet> getTweets() {
+        List<Tweet> timeline = new ArrayList<>(pendingTweets.size() + tweets.size());
+        timeline.addAll(pendingTweets);
+        timeline.addAll(tweets);
+        return timeline;
+    }
+
+    // Inserts a run of consecutive timeline tweets (newest first), replacing loaded tweets in the same
+    // ID range. topContiguous means the run starts right below the next newer loaded tweet (it was
+    // requested with that tweet's ID as max_id); complete means Twitter returned everything down to
+    // the request's since_id. The run connects to the next older loaded tweet if it is complete or
+    // overlaps loaded tweets; otherwise a gap is recorded below its oldest tweet.
+    private void insertRun(List<Tweet> run, boolean topContiguous, boolean complete) {
+        if (run.isEmpty()) {
+            return;
+        }
+        long newest = run.get(0).ID;
+        long oldest = run.get(run.size() - 1).ID;
+        List<Tweet> changed = new ArrayList<>(run);
+
+        List<Tweet> merged = new ArrayList<>(tweets.size() + run.size());
+        int i = 0;
+        while (i < tweets.size() && tweets.get(i).ID > newest) {
+            merged.add(tweets.get(i++));
+        }
+        // the loaded tweet right above the run no longer has a gap if the run was requested below it
+        if (topContiguous && !merged.isEmpty() && merged.get(merged.size() - 1).gapBelow) {
+            Tweet above = merged.get(merged.size() - 1).copy();
+            above.gapBelow = false;
+            merged.set(merged.size() - 1, above);
+            changed.add(above);
+        }
+        Tweet lastReplaced = null;
+        while (i < tweets.size() && tweets.get(i).ID >= oldest) {
+            lastReplaced = tweets.get(i++);
+        }
+        boolean hasOlder = i < tweets.size();
+
+        boolean gapBelow;
+        if (complete) {
+            gapBelow = false;
+        } else if (lastReplaced != null) {
+            gapBelow = lastReplaced.gapBelow;
+        } else {
+            gapBelow = hasOlder;
+        }
+        Tweet bottom = run.get(run.size() - 1);
+        if (bottom.gapBelow != gapBelow) {
+            bottom = bottom.copy();
+            bottom.gapBelow = gapBelow;
+            changed.set(run.size() - 1, bottom);
+        }
+        merged.addAll(run.subList(0, run.size() - 1));
+        merged.add(bottom);
+        merged.addAll(tweets.subList(i, tweets.size()));
+
+        tweets.clear();
+        tweets.addAll(merged);
+        sinceId = Math.max(sinceId, newest);
+        saveTweets(changed);
+    }
+
+    // cached tweets fill in below what was already fetched; if they don't reach up to the fetched
+    // tweets, the cached segment is separated from them by a gap
+    private void insertCached(List<Tweet> cachedTweets) {
+        if (tweets.isEmpty()) {
+            tweets.addAll(cachedTweets);
+        } else {
+            int bottomIndex = tweets.size() - 1;
+            Tweet bottom = tweets.get(bottomIndex);
+            boolean gapBelow = true;
+            for (Tweet cached : cachedTweets) {
+                if (cached.ID == bottom.ID) {
+                    gapBelow = cached.gapBelow;
+                } else if (cached.ID < bottom.ID) {
+                    tweets.add(cached);
+                }
+            }
+            if (tweets.size() > bottomIndex + 1 && bottom.gapBelow != gapBelow) {
+                bottom = bottom.copy();
+                bottom.gapBelow = gapBelow;
+                tweets.set(bottomIndex, bottom);
+                saveTweets(Collections.singletonList(bottom));
+            }
+        }
+        sinceId = Math.max(sinceId, cachedTweets.get(0).ID);
+    }
+
+    private void clearGap(long gapId) {
+        int position = indexOf(gapId);
+        if (position >= 0 && tweets.get(position).gapBelow) {
+            Tweet tweet = tweets.get(position).copy();
+            tweet.gapBelow = false;
+            tweets.set(position, tweet);
+            saveTweets(Collections.singletonList(tweet));
+        }
+    }
+
+    // A page may bring newer profile data, which UserMap keeps in a new User; the loaded tweets by
+    // the same authors are replaced with copies pointing to it, so they show it as well
+    private void repointAuthors() {
+        for (int i = 0; i < tweets.size(); i++) {
+            Tweet tweet = tweets.get(i);
+            User author = tweet.user == null ? null : UserMap.get(tweet.user.id);
+            if (author != null && author != tweet.user) {
+                Tweet repointed = tweet.copy();
+                repointed.user = author;
+                tweets.set(i, repointed);
+            }
+        }
+    }
+
+    private int indexOf(long id) {
+        for (int i = 0; i < tweets.size(); i++) {
+            if (tweets.get(i).ID == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void notifyChanged() {
+        tweetRepository.putAll(tweets);
+        listener.onTimelineChanged(getTweets());
+    }
+
+    // persist fetched tweets and their authors, keeping only the newest NUM_CACHED_TWEETS and the
+    // users who wrote them
+    private void saveTweets(final List<Tweet> tweetsToSave) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                myDatabase.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        tweetDao.insertModel(Tweet.getUsers(tweetsToSave).toArray(new User[0]));
+                        tweetDao.insertModel(tweetsToSave.toArray(new Tweet[0]));
+                        tweetDao.trimTo(NUM_CACHED_TWEETS);
+                        tweetDao.trimUsers();
+                    }
+                });
+            }
+        });
+    }
+
+    private interface PageCallback {
+        void onPage(List<Tweet> page);
+
+        void onFailed();
+    }
+
+    // prefetch is set for pages loaded ahead of the user scrolling to them; those are skipped when
+    // the rate limit is nearly used up, which isn't reported since nobody is waiting for them
+    private void fetch(long max, long since, boolean prefetch, PageCallback callback, String errorMessage) {
+        fetch(max, since, prefetch, userCache.shouldTrim(since != 0), callback, errorMessage);
+    }
+
+    // pages whose authors are likely known are requested with trim_user (see UserCache.shouldTrim)
+    // and their users filled in from the cache; if that isn't possible the page is requested again in
+    // full
+    private void fetch(final long max, final long since, final boolean prefetch, final boolean trimUser,
+                       final PageCallback callback, final String errorMessage) {
+        client.getHomeTimeline(max, since, prefetch, trimUser, new TextHttpResponseHandler() {
+            @Override
+            public void onSuccess(int statusCode, Headers headers, String response) {
+                TweetDecoder.decodeTimeline(response, new TweetDecoder.Callback() {
+                    @Override
+                    public void onDecoded(final List<Tweet> decoded) {
+                        userCache.hydrate(decoded, new UserCache.Callback() {
+                            @Override
+                            public void onHydrated() {
+                                List<Tweet> page = actionQueue.applyPending(decoded);
+                                repointAuthors();
+                                searchIndex.add(page);
+                                listener.onPageLoaded(page);
+                                callback.onPage(page);
+                            }
+
+                            @Override
+                            public void onFailed(@Nullable Throwable throwable) {
+                                fetch(max, since, prefetch, false, callback, errorMessage);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        listener.onLoadFailed("Error: Unable to parse timeline", e);
+                        callback.onFailed();
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+                if (statusCode != 429) {
+                    listener.onLoadFailed(errorMessage, throwable);
+                } else if (!prefetch) {
+                    listener.onLoadFailed("Twitter's rate limit was reached, try again in a few minutes", throwable);
+                }
+                callback.onFailed();
+            }
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.models.TweetDao;
+import com.codepath.apps.restclienttemplate.models.TweetWithUser;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up the tweets the app has loaded by their ID, so activities only have to pass each other a
+ * tweet's ID rather than the whole tweet. The tweets on the timeline are kept in memory (TimelinePager
+ * adds them as they're shown); any other tweet is read back from the timeline cache in MyDatabase.
+ *
+ * Holds at most MAX_TWEETS tweets and evicts the least recently used one.
+ *
+ * Must only be used on the main thread; callbacks are made on the main thread.
+ */
+public class TweetRepository {
+
+    public interface Callback {
+        // called with the tweet, or null if it isn't loaded or cached
+        void onTweetLoaded(@Nullable Tweet tweet);
+    }
+
+    private static final int MAX_TWEETS = 10 * TwitterClient.NUM_LOAD_TWEETS;
+
+    private final TweetDao tweetDao;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // access order, so the eldest entry is the least recently used tweet
+    private final Map<Long, Tweet> tweets = new LinkedHashMap<Long, Tweet>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Tweet> eldest) {
+            return size() > MAX_TWEETS;
+        }
+    };
+
+    public TweetRepository(TweetDao tweetDao) {
+        this.tweetDao = tweetDao;
+    }
+
+    // tweets are immutable once shown, so a newer copy simply replaces the stored one
+    public void putAll(List<Tweet> loaded) {
+        for (Tweet tweet : loaded) {
+            tweets.put(tweet.ID, tweet);
+        }
+    }
+
+    // calls back right away if the tweet is in memory
+    public void get(final long id, final Callback callback) {
+        Tweet tweet = tweets.get(id);
+        if (tweet != null) {
+            callback.onTweetLoaded(tweet);
+            return;
+        }
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                TweetWithUser stored = tweetDao.byId(id);
+                final Tweet tweet = stored == null || stored.user == null
+                        ? null : TweetWithUser.getTweetList(Collections.singletonList(stored)).get(0);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (tweet != null) {
+                            tweets.put(id, tweet);
+                        }
+                        callback.onTweetLoaded(tweet);
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,396 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.codepath.apps.restclienttemplate.MyDatabase;
+import com.codepath.apps.restclienttemplate.models.Draft;
+import com.codepath.apps.restclienttemplate.models.DraftDao;
+import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.models.TweetDecoder;
+import com.codepath.apps.restclienttemplate.models.User;
+import com.codepath.apps.restclienttemplate.models.UserMap;
+import com.codepath.asynchttpclient.callback.TextHttpResponseHandler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.Headers;
+
+/**
+ * Saves the tweets the user writes and publishes them in the background. While a tweet is being
+ * written it is kept as a draft in MyDatabase, so the text survives the compose screen being closed
+ * or the app being killed. Once the user presses Tweet the draft is queued: the compose screen can
+ * close right away, the tweet is shown on top of the timeline as pending, and it is sent here.
+ *
+ * Queued tweets are sent one at a time, in the order they were queued. When Twitter can't be reached,
+ * or answers with a rate limit or server error, sending is retried with exponential backoff. Any
+ * other error turns the tweet back into a draft, so the user can edit it and try again. Queued tweets
+ * are also handed to SendWorker, which sends them once the device is online even if the app has been
+ * closed in the meantime.
+ *
+ * All methods must be called on the main thread, and callbacks are made on the main thread.
+ */
+public class TweetSender {
+
+    public interface Listener {
+        // called with the queued tweets, newest first, whenever they change
+        void onPendingTweetsChanged(List<Tweet> pendingTweets);
+
+        void onTweetSent(Tweet tweet);
+
+        void onSendFailed(String message);
+    }
+
+    public interface DraftCallback {
+        // called with the saved draft text, or an empty string if there is none
+        void onDraftLoaded(String body);
+    }
+
+    private static final String TAG = "TweetSender";
+    private static final long MIN_RETRY_DELAY_MS = 2 * 1000;
+    private static final long MAX_RETRY_DELAY_MS = 5 * 60 * 1000;
+    // "Status is a duplicate": an earlier attempt was published even though its response was lost
+    private static final int DUPLICATE_STATUS = 187;
+
+    private final Context context;
+    private final TwitterClient client;
+    private final DraftDao draftDao;
+    // drafts are written in order on one thread, so a draft is always inserted before it is updated
+    private final ExecutorService databaseExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final List<Draft> queued = new ArrayList<>();
+    private Draft sending;
+    private boolean loaded;
+    private boolean waitingToRetry;
+    // set when the user logs out; nothing is sent or stored after that
+    private boolean closed;
+    // author shown on pending tweets; a blank user until the logged in user has been fetched
+    private User currentUser = new User(0, "", "", "");
+    private Listener listener;
+    private SendWorker.FlushCallback flushCallback;
+
+    private final Runnable retry = new Runnable() {
+        @Override
+        public void run() {
+            waitingToRetry = false;
+            sendNext();
+        }
+    };
+
+    public TweetSender(Context context, TwitterClient client, MyDatabase myDatabase) {
+        this.context = context.getApplicationContext();
+        this.client = client;
+        this.draftDao = myDatabase.draftDao();
+        loadQueued();
+        loadCurrentUser();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null) {
+            listener.onPendingTweetsChanged(getPendingTweets());
+        }
+    }
+
+    public void loadDraft(final String inReplyToId, final DraftCallback callback) {
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Draft draft = draftDao.unsent(inReplyToId);
+                final String body = draft == null ? "" : draft.body;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onDraftLoaded(body);
+                    }
+                });
+            }
+        });
+    }
+
+    // keeps what the user has written so far; an empty body discards the draft
+    public void saveDraft(final String body, final String inReplyToId) {
+        if (closed) {
+            return;
+        }
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Draft draft = draftDao.unsent(inReplyToId);
+                if (draft == null) {
+                    if (!body.isEmpty()) {
+                        draftDao.insertModel(new Draft(body, inReplyToId));
+                    }
+                } else if (body.isEmpty()) {
+                    draftDao.deleteModel(draft);
+                } else {
+                    draft.body = body;
+                    draftDao.updateModel(draft);
+                }
+            }
+        });
+    }
+
+    // queues the tweet to be published, replacing the draft it was written in
+    public void send(String body, final String inReplyToId) {
+        if (closed) {
+            return;
+        }
+        final Draft draft = new Draft(body, inReplyToId);
+        draft.queued = true;
+        queued.add(draft);
+        SendWorker.schedule(context);
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Draft unsent = draftDao.unsent(inReplyToId);
+                if (unsent != null) {
+                    draftDao.deleteModel(unsent);
+                }
+                draft.id = draftDao.insertModel(draft);
+                // the pending tweet is shown once it has an id, which is also its timeline ID
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        notifyPendingChanged();
+                        sendNext();
+                    }
+                });
+            }
+        });
+    }
+
+    // queued tweets saved during an earlier session go before any queued since the app started
+    private void loadQueued() {
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Draft> stored = draftDao.queued();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (closed) {
+                            return;
+                        }
+                        queued.addAll(0, stored);
+                        loaded = true;
+                        if (!stored.isEmpty()) {
+                            // they may have been queued by a version of the app without SendWorker
+                            SendWorker.schedule(context);
+                        }
+                        notifyPendingChanged();
+                        sendNext();
+                    }
+                });
+            }
+        });
+    }
+
+    private void loadCurrentUser() {
+        client.getCurrentUser(new TextHttpResponseHandler() {
+            @Override
+            public void onSuccess(int statusCode, Headers headers, String response) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    currentUser = UserMap.intern(User.fromJson(new JSONObject(response)));
+                    notifyPendingChanged();
+                } catch (JSONException e) {
+                    Log.e(TAG, "unable to parse current user", e);
+                }
+            }
+
+            @Override
+            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+                Log.e(TAG, "unable to load current user: " + response, throwable);
+            }
+        });
+    }
+
+    private void sendNext() {
+        if (!loaded || sending != null || waitingToRetry) {
+            notifyFlushed();
+            return;
+        }
+        // a draft only goes out once it has been inserted and has its id
+        final Draft draft = queued.isEmpty() ? null : queued.get(0);
+        if (draft == null || draft.id == 0) {
+            notifyFlushed();
+            return;
+        }
+        sending = draft;
+        client.publishTweet(draft.body, draft.inReplyToId, new TextHttpResponseHandler() {
+            @Override
+            public void onSuccess(int statusCode, Headers headers, String response) {
+                if (closed) {
+                    return;
+                }
+                TweetDecoder.decodeTweet(response, new TweetDecoder.Callback() {
+                    @Override
+                    public void onDecoded(List<Tweet> tweets) {
+                        if (closed) {
+                            return;
+                        }
+                        finish(draft);
+                        if (listener != null) {
+                            listener.onTweetSent(tweets.get(0));
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        // it was published, it'll show up with the next refresh
+                        Log.e(TAG, "unable to parse published tweet", e);
+                        if (!closed) {
+                            finish(draft);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+                if (closed) {
+                    return;
+                }
+                sending = null;
+                if (statusCode == 0 || statusCode == 429 || statusCode >= 500) {
+                    // offline, rate limited or a server error: try the same tweet again later
+                    draft.attempts++;
+                    update(draft);
+                    scheduleRetry(draft.attempts);
+                    return;
+                }
+                if (errorCode(response) == DUPLICATE_STATUS) {
+                    finish(draft);
+                    return;
+                }
+                queued.remove(draft);
+                draft.queued = false;
+                draft.attempts = 0;
+                update(draft);
+                notifyPendingChanged();
+                if (listener != null) {
+                    listener.onSendFailed("Error: Tweet not published, it was saved as a draft");
+                }
+                Log.e(TAG, "onFailure to publish tweet: " + response, throwable);
+                sendNext();
+            }
+        });
+    }
+
+    // the draft was published, so it is removed and the next one is sent
+    private void finish(final Draft draft) {
+        sending = null;
+        queued.remove(draft);
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                draftDao.deleteModel(draft);
+            }
+        });
+        notifyPendingChanged();
+        sendNext();
+    }
+
+    // Drops the drafts and queued tweets of the account that is logging out, in memory and, after the
+    // writes still queued, in MyDatabase. Responses to a tweet already sent are ignored
+    public void close() {
+        closed = true;
+        listener = null;
+        queued.clear();
+        mainHandler.removeCallbacks(retry);
+        if (flushCallback != null) {
+            flushCallback.onFlushed(true);
+            flushCallback = null;
+        }
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                draftDao.deleteAll();
+            }
+        });
+    }
+
+    // waits twice as long after each failed attempt, up to MAX_RETRY_DELAY_MS, and has SendWorker
+    // try again once online in case the app is closed before then
+    private void scheduleRetry(int attempts) {
+        long delay = MIN_RETRY_DELAY_MS << Math.min(attempts - 1, 16);
+        waitingToRetry = true;
+        mainHandler.postDelayed(retry, Math.min(delay, MAX_RETRY_DELAY_MS));
+        SendWorker.schedule(context);
+        notifyFlushed();
+    }
+
+    private void update(final Draft draft) {
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                draftDao.updateModel(draft);
+            }
+        });
+    }
+
+    // sends what is queued right away rather than after the retry delay; SendWorker calls this once
+    // the device is online, and is called back when nothing is being sent any more
+    void flush(SendWorker.FlushCallback callback) {
+        if (closed) {
+            callback.onFlushed(true);
+            return;
+        }
+        flushCallback = callback;
+        if (waitingToRetry) {
+            mainHandler.removeCallbacks(retry);
+            waitingToRetry = false;
+        }
+        sendNext();
+    }
+
+    // calls back SendWorker once nothing is being sent: the queue is empty, or waiting to be retried
+    private void notifyFlushed() {
+        if (flushCallback == null || !loaded || sending != null) {
+            return;
+        }
+        if (queued.isEmpty() || waitingToRetry) {
+            SendWorker.FlushCallback callback = flushCallback;
+            flushCallback = null;
+            callback.onFlushed(queued.isEmpty());
+        }
+    }
+
+    // queued tweets as pending timeline tweets, newest first like the timeline
+    private List<Tweet> getPendingTweets() {
+        List<Tweet> pendingTweets = new ArrayList<>();
+        for (Draft draft : queued) {
+            if (draft.id != 0) {
+                pendingTweets.add(0, Tweet.fromDraft(draft, currentUser));
+            }
+        }
+        return pendingTweets;
+    }
+
+    private void notifyPendingChanged() {
+        if (listener != null) {
+            listener.onPendingTweetsChanged(getPendingTweets());
+        }
+    }
+
+    // the code of the first error in a Twitter error response, or 0 if there is none
+    private static int errorCode(String response) {
+        try {
+            return new JSONObject(response).getJSONArray("errors").getJSONObject(0).getInt("code");
+        } catch (JSONException | NullPointerException e) {
+            return 0;
+        }
+    }
+}
@@ -2,11 +2,14 @@ package com.codepath.apps.restclienttemplate.network;
 
 import android.app.Application;
 import android.content.Context;
+import android.os.AsyncTask;
 
 import androidx.room.Room;
 
+import com.codepath.apps.restclienttemplate.DebugTools;
+import com.codepath.apps.restclienttemplate.Metrics;
 import com.codepath.apps.restclienttemplate.MyDatabase;
-import com.facebook.stetho.Stetho;
+import com.codepath.apps.restclienttemplate.models.UserMap;
 
 /*
  * This is the Android application itself and is used to configure various settings
@@ -20,24 +23,108 @@ import com.facebook.stetho.Stetho;
 public class TwitterApp extends Application {
 
     private MyDatabase myDatabase;
+    private ActionQueue actionQueue;
+    private TweetSender tweetSender;
+    private UserCache userCache;
+    private TweetRepository tweetRepository;
+    private SearchIndex searchIndex;
 
     @Override
     public void onCreate() {
         super.onCreate();
-        // when upgrading versions, kill the original tables by using
-		// fallbackToDestructiveMigration()
-        myDatabase = Room.databaseBuilder(this, MyDatabase.class,
-                MyDatabase.NAME).fallbackToDestructiveMigration().build();
-
-        // use chrome://inspect to inspect your SQL database
-        Stetho.initializeWithDefaults(this);
+        Metrics.appStarted();
+        // Stetho in debug builds, nothing in release builds
+        DebugTools.init(this);
     }
 
     public static TwitterClient getRestClient(Context context) {
         return (TwitterClient) TwitterClient.getInstance(TwitterClient.class, context);
     }
 
-    public MyDatabase getMyDatabase() {
+    // Forgets the account that is logging out, so nothing of it is shown to or sent for the next
+    // one: its access token, its queued tweets, drafts, retweets and likes, and the timeline, users
+    // and search index cached for it. The senders and caches are created again for the next account.
+    // The cache is cleared on AsyncTask's serial executor, after any timeline pages still being saved
+    // there, and the queues after their own pending writes (or here, if they weren't created)
+    public void logOut() {
+        getRestClient(this).clearAccessToken();
+        SendWorker.cancel(this);
+        if (actionQueue != null) {
+            actionQueue.close();
+            actionQueue = null;
+        }
+        if (tweetSender != null) {
+            tweetSender.close();
+            tweetSender = null;
+        }
+        tweetRepository = null;
+        UserMap.clear();
+        final MyDatabase database = getMyDatabase();
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                database.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        database.tweetDao().deleteTweets();
+                        database.tweetDao().deleteUsers();
+                        database.pendingActionDao().deleteAll();
+                        database.draftDao().deleteAll();
+                    }
+                });
+            }
+        });
+        getSearchIndex().clear();
+    }
+
+    // the database is built on first use rather than while the app starts; Room only opens the file
+    // when the first query runs, and queries always run on a background thread
+    public synchronized MyDatabase getMyDatabase() {
+        if (myDatabase == null) {
+            // versions before 6 only had the timeline cache, which is simply dropped; from 6 on the
+            // send queues are migrated
+            myDatabase = Room.databaseBuilder(this, MyDatabase.class, MyDatabase.NAME)
+                    .addMigrations(MyDatabase.MIGRATION_6_7, MyDatabase.MIGRATION_7_8)
+                    .fallbackToDestructiveMigrationFrom(1, 2, 3, 4, 5)
+                    .build();
+        }
         return myDatabase;
     }
+
+    // created on first use, which also starts sending the actions left over from the last session
+    public ActionQueue getActionQueue() {
+        if (actionQueue == null) {
+            actionQueue = new ActionQueue(this, getRestClient(this), getMyDatabase());
+        }
+        return actionQueue;
+    }
+
+    public UserCache getUserCache() {
+        if (userCache == null) {
+            userCache = new UserCache(getRestClient(this), getMyDatabase().tweetDao());
+        }
+        return userCache;
+    }
+
+    public TweetRepository getTweetRepository() {
+        if (tweetRepository == null) {
+            tweetRepository = new TweetRepository(getMyDatabase().tweetDao());
+        }
+        return tweetRepository;
+    }
+
+    public SearchIndex getSearchIndex() {
+        if (searchIndex == null) {
+            searchIndex = new SearchIndex(getMyDatabase());
+        }
+        return searchIndex;
+    }
+
+    // created on first use, which also starts sending the tweets queued during the last session
+    public TweetSender getTweetSender() {
+        if (tweetSender == null) {
+            tweetSender = new TweetSender(this, getRestClient(this), getMyDatabase());
+        }
+        return tweetSender;
+    }
 }
\ No newline at end of file
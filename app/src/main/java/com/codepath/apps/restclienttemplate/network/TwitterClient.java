@@ -1,17 +1,30 @@
 package com.codepath.apps.restclienttemplate.network;
 
 import android.content.Context;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
 
 import com.codepath.apps.restclienttemplate.BuildConfig;
+import com.codepath.apps.restclienttemplate.Metrics;
 import com.codepath.apps.restclienttemplate.R;
 import com.codepath.asynchttpclient.RequestParams;
-import com.codepath.asynchttpclient.callback.JsonHttpResponseHandler;
+import com.codepath.asynchttpclient.callback.TextHttpResponseHandler;
 import com.codepath.oauth.OAuthBaseClient;
 import com.github.scribejava.apis.FlickrApi;
 import com.github.scribejava.apis.TwitterApi;
 import com.github.scribejava.core.builder.api.BaseApi;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Headers;
+
 /*
  * 
  * This is the object responsible for communicating with a REST API. 
@@ -30,6 +43,8 @@ public class TwitterClient extends OAuthBaseClient {
 	public static final String REST_CONSUMER_KEY = BuildConfig.CONSUMER_KEY;       // Change this inside apikey.properties
 	public static final String REST_CONSUMER_SECRET = BuildConfig.CONSUMER_SECRET; // Change this inside apikey.properties
 	public static final int NUM_LOAD_TWEETS = 25;
+	private static final int MAX_CACHED_TIMELINE_RESPONSES = 16;
+	private static final long TIMELINE_CACHE_TTL_MS = 15 * 1000;
 
 	// Landing page to indicate the OAuth flow worked in case Chrome for Android 25+ blocks navigation back to the app.
 	public static final String FALLBACK_URL = "https://codepath.github.io/android-rest-client-template/success.html";
@@ -37,6 +52,30 @@ public class TwitterClient extends OAuthBaseClient {
 	// See https://developer.chrome.com/multidevice/android/intents
 	public static final String REST_CALLBACK_URL_TEMPLATE = "intent://%s#Intent;action=android.intent.action.VIEW;scheme=%s;package=%s;S.browser_fallback_url=%s;end";
 
+	// Requests share the client's single OkHttpClient (this class is a singleton), so they reuse its
+	// connection pool and HTTP/2 connections, and OkHttp already asks for and decodes gzip responses.
+
+	// home_timeline requests waiting for a response, keyed by their parameters and whether they're a
+	// prefetch. An identical request made in the meantime is answered by the one in flight instead of
+	// being sent again, except that a request the user is waiting for never joins a prefetch: that may
+	// be dropped when the rate limit is low, while the user's request would still be sent. Requests
+	// are made and answered on the main thread, so no locking is needed.
+	private final Map<String, CoalescedResponseHandler> inFlightTimelineRequests = new HashMap<>();
+
+	// Recent home_timeline responses, with the same keys. A response from the last few seconds is
+	// reused as it is (e.g. when the timeline activity is recreated). Twitter marks timeline responses
+	// as no-store and sends no ETags, so OkHttp's own cache wouldn't keep them and older ones can't be
+	// revalidated. Every write clears them, since they show the retweets and likes from before it.
+	private final ResponseCache timelineCache = new ResponseCache(MAX_CACHED_TIMELINE_RESPONSES, TIMELINE_CACHE_TTL_MS);
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	// requests left in each endpoint's rate limit window, see schedule()
+	private final RateLimiter rateLimiter = new RateLimiter();
+
+	// when set, the API is requested from here instead of REST_URL; the instrumented tests use it to
+	// run against a local fake of the API (see FakeTwitterApi in androidTest)
+	private static volatile String baseUrlOverride;
+
 	public TwitterClient(Context context) {
 		super(context, REST_API_INSTANCE,
 				REST_URL,
@@ -47,32 +86,261 @@ public class TwitterClient extends OAuthBaseClient {
 						context.getString(R.string.intent_scheme), context.getPackageName(), FALLBACK_URL));
 	}
 
-	public void getHomeTimeline(long max_id, JsonHttpResponseHandler handler) {
-		String apiUrl = getApiUrl("statuses/home_timeline.json");
-		RequestParams params = new RequestParams();
+	public static void overrideBaseUrl(@Nullable String baseUrl) {
+		baseUrlOverride = baseUrl;
+	}
+
+	@Override
+	protected String getApiUrl(String path) {
+		String baseUrl = baseUrlOverride;
+		return baseUrl == null ? super.getApiUrl(path) : baseUrl + "/" + path;
+	}
+
+	// the raw response body is handed to the caller so it can be decoded with a streaming parser
+	public void getHomeTimeline(long max_id, TextHttpResponseHandler handler) {
+		getHomeTimeline(max_id, 0, handler);
+	}
+
+	// returns the newest tweets with IDs at most max_id and greater than since_id; 0 means no bound
+	public void getHomeTimeline(long max_id, long since_id, TextHttpResponseHandler handler) {
+		getHomeTimeline(max_id, since_id, false, false, handler);
+	}
+
+	// prefetch requests (loading ahead of what the user is looking at) aren't sent when the rate
+	// limit is nearly used up, so the rest of the window is left for requests the user is waiting for.
+	// With trim_user, each tweet's user only has its id, which saves most of the payload when the
+	// authors are already known locally (see UserCache)
+	public void getHomeTimeline(long max_id, long since_id, boolean prefetch, boolean trim_user,
+			final TextHttpResponseHandler handler) {
+		final String key = max_id + ":" + since_id + ":" + trim_user;
+		final ResponseCache.Entry cached = timelineCache.get(key);
+		if (cached != null) {
+			// answered asynchronously like a real request, so callers don't see a difference
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					handler.onSuccess(200, cached.headers, cached.body);
+				}
+			});
+			return;
+		}
+		CoalescedResponseHandler inFlight = inFlightTimelineRequests.get(key + ":false");
+		if (inFlight == null && prefetch) {
+			inFlight = inFlightTimelineRequests.get(key + ":true");
+		}
+		if (inFlight != null) {
+			inFlight.handlers.add(handler);
+			return;
+		}
+		final String inFlightKey = key + ":" + prefetch;
+		CoalescedResponseHandler coalesced = new CoalescedResponseHandler() {
+			@Override
+			void onFinished() {
+				inFlightTimelineRequests.remove(inFlightKey);
+			}
+
+			@Override
+			public void onSuccess(int statusCode, Headers headers, String response) {
+				timelineCache.put(key, response, headers);
+				super.onSuccess(statusCode, headers, response);
+			}
+		};
+		coalesced.handlers.add(handler);
+		inFlightTimelineRequests.put(inFlightKey, coalesced);
+
+		final String apiUrl = getApiUrl("statuses/home_timeline.json");
+		final RequestParams params = new RequestParams();
 		params.put("tweet_mode", "extended");
 		params.put("count", NUM_LOAD_TWEETS);
 		if(max_id != 0)
 			params.put("max_id", max_id);
-		client.get(apiUrl, params, handler);
+		if(since_id != 0)
+			params.put("since_id", since_id);
+		if(trim_user)
+			params.put("trim_user", "true");
+		schedule("statuses/home_timeline", prefetch, false, coalesced, new Request() {
+			@Override
+			public void send(TextHttpResponseHandler handler) {
+				client.get(apiUrl, params, handler);
+			}
+		});
 	}
 
-	public void publishTweet(String tweetContent, String inReplyToID, JsonHttpResponseHandler handler) {
+	// the logged in user
+	public void getCurrentUser(TextHttpResponseHandler handler) {
+		final String apiUrl = getApiUrl("account/verify_credentials.json");
+		final RequestParams params = new RequestParams();
+		params.put("skip_status", "true");
+		schedule("account/verify_credentials", false, false, handler, new Request() {
+			@Override
+			public void send(TextHttpResponseHandler handler) {
+				client.get(apiUrl, params, handler);
+			}
+		});
+	}
+
+	// up to 100 users by id, without their latest tweet or entities
+	public void lookupUsers(List<Long> userIds, TextHttpResponseHandler handler) {
+		StringBuilder ids = new StringBuilder();
+		for (long id : userIds) {
+			if (ids.length() > 0) {
+				ids.append(',');
+			}
+			ids.append(id);
+		}
+		final String apiUrl = getApiUrl("users/lookup.json");
+		final RequestParams params = new RequestParams();
+		params.put("user_id", ids.toString());
+		params.put("include_entities", "false");
+		schedule("users/lookup", false, false, handler, new Request() {
+			@Override
+			public void send(TextHttpResponseHandler handler) {
+				client.get(apiUrl, params, handler);
+			}
+		});
+	}
+
+	public void publishTweet(String tweetContent, String inReplyToID, TextHttpResponseHandler handler) {
 		String apiUrl = getApiUrl("statuses/update.json");
 		RequestParams params = new RequestParams();
 		params.put("status", tweetContent);
 		if (!inReplyToID.isEmpty()) {
 			params.put("in_reply_to_status_id", inReplyToID);
 		}
-		client.post(apiUrl, params, "", handler);
+		post("statuses/update", apiUrl, params, handler);
 	}
 
-	public void retweet(String tweetID, JsonHttpResponseHandler handler) {
+	public void retweet(String tweetID, TextHttpResponseHandler handler) {
 		String apiUrl = getApiUrl("statuses/retweet/" + tweetID + ".json");
 		RequestParams params = new RequestParams();
-		Log.d("WHY", apiUrl);
 		params.put("id", tweetID);
-		client.post(apiUrl, params, "", handler);
+		post("statuses/retweet", apiUrl, params, handler);
+	}
+
+	// responds with the original tweet
+	public void unretweet(String tweetID, TextHttpResponseHandler handler) {
+		String apiUrl = getApiUrl("statuses/unretweet/" + tweetID + ".json");
+		RequestParams params = new RequestParams();
+		params.put("id", tweetID);
+		post("statuses/unretweet", apiUrl, params, handler);
+	}
+
+	public void like(String tweetID, TextHttpResponseHandler handler) {
+		String apiUrl = getApiUrl("favorites/create.json");
+		RequestParams params = new RequestParams();
+		params.put("id", tweetID);
+		post("favorites", apiUrl, params, handler);
+	}
+
+	public void unlike(String tweetID, TextHttpResponseHandler handler) {
+		String apiUrl = getApiUrl("favorites/destroy.json");
+		RequestParams params = new RequestParams();
+		params.put("id", tweetID);
+		post("favorites", apiUrl, params, handler);
+	}
+
+	// cached responses belong to the account that is logging out
+	@Override
+	public void clearAccessToken() {
+		timelineCache.clear();
+		super.clearAccessToken();
+	}
+
+	// Writes are queued by their callers and nobody is waiting on them, so they can wait for the
+	// rate limit window to reset. Cached timeline responses are dropped when a write is made and again
+	// when it is answered, as responses fetched while it was in flight may not show it yet
+	private void post(String endpoint, final String apiUrl, final RequestParams params, final TextHttpResponseHandler handler) {
+		timelineCache.clear();
+		schedule(endpoint, false, true, new TextHttpResponseHandler() {
+			@Override
+			public void onSuccess(int statusCode, Headers headers, String response) {
+				timelineCache.clear();
+				handler.onSuccess(statusCode, headers, response);
+			}
+
+			@Override
+			public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+				timelineCache.clear();
+				handler.onFailure(statusCode, headers, response, throwable);
+			}
+		}, new Request() {
+			@Override
+			public void send(TextHttpResponseHandler handler) {
+				client.post(apiUrl, params, "", handler);
+			}
+		});
+	}
+
+	private interface Request {
+		void send(TextHttpResponseHandler handler);
+	}
+
+	// Sends the request now if the endpoint's rate limit allows it. Otherwise a deferrable request is
+	// sent once the window resets, and any other request fails right away with a 429 instead of
+	// getting one from Twitter.
+	private void schedule(final String endpoint, final boolean prefetch, final boolean deferrable,
+			final TextHttpResponseHandler handler, final Request request) {
+		long wait = rateLimiter.waitTime(endpoint, prefetch);
+		if (wait == 0) {
+			request.send(rateLimiter.track(endpoint, measure(endpoint, handler)));
+		} else if (deferrable) {
+			mainHandler.postDelayed(new Runnable() {
+				@Override
+				public void run() {
+					schedule(endpoint, prefetch, true, handler, request);
+				}
+			}, wait);
+		} else {
+			final Throwable error = new IOException("Rate limit for " + endpoint + " reached");
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					handler.onFailure(429, null, "", error);
+				}
+			});
+		}
+	}
+
+	// records how long the request took and how large its response was
+	private static TextHttpResponseHandler measure(final String endpoint, final TextHttpResponseHandler handler) {
+		final long sentAt = SystemClock.elapsedRealtime();
+		return new TextHttpResponseHandler() {
+			@Override
+			public void onSuccess(int statusCode, Headers headers, String response) {
+				Metrics.record(Metrics.requestMs(endpoint), SystemClock.elapsedRealtime() - sentAt);
+				Metrics.record(Metrics.responseChars(endpoint), response == null ? 0 : response.length());
+				handler.onSuccess(statusCode, headers, response);
+			}
+
+			@Override
+			public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+				Metrics.record(Metrics.requestMs(endpoint), SystemClock.elapsedRealtime() - sentAt);
+				handler.onFailure(statusCode, headers, response, throwable);
+			}
+		};
+	}
+
+	// passes a single response on to every handler that asked for it
+	private abstract static class CoalescedResponseHandler extends TextHttpResponseHandler {
+		final List<TextHttpResponseHandler> handlers = new ArrayList<>();
+
+		abstract void onFinished();
+
+		@Override
+		public void onSuccess(int statusCode, Headers headers, String response) {
+			onFinished();
+			for (TextHttpResponseHandler handler : handlers) {
+				handler.onSuccess(statusCode, headers, response);
+			}
+		}
+
+		@Override
+		public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+			onFinished();
+			for (TextHttpResponseHandler handler : handlers) {
+				handler.onFailure(statusCode, headers, response, throwable);
+			}
+		}
 	}
 
 }
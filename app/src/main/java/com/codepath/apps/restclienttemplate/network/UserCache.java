@@ -0,0 +1,160 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.codepath.apps.restclienttemplate.models.TweetDao;
+import com.codepath.apps.restclienttemplate.models.User;
+import com.codepath.apps.restclienttemplate.models.UserMap;
+import com.codepath.asynchttpclient.callback.TextHttpResponseHandler;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import okhttp3.Headers;
+
+/**
+ * Fills in the users of timeline pages requested with trim_user. Users already in memory come from
+ * UserMap, which the decoder uses as well, so most trimmed tweets already have their author by the
+ * time they get here. A user that isn't in memory is read from the User table in MyDatabase, and
+ * any still missing are requested with a single users/lookup call.
+ *
+ * That extra request costs more than trimming saves, so shouldTrim() only asks for trimmed pages when
+ * their authors are likely to be known.
+ *
+ * Must only be used on the main thread; callbacks are made on the main thread.
+ */
+public class UserCache {
+
+    public interface Callback {
+        void onHydrated();
+
+        void onFailed(Throwable throwable);
+    }
+
+    // at most this share of a trimmed page's authors may have had to be looked up on Twitter for the
+    // next page to be trimmed as well
+    private static final float MAX_MISS_RATE = 0.2f;
+
+    private final TwitterClient client;
+    private final TweetDao tweetDao;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // share of the last trimmed page's authors that had to be looked up on Twitter; until a page was
+    // trimmed nothing is known
+    private float lastMissRate = 1;
+
+    public UserCache(TwitterClient client, TweetDao tweetDao) {
+        this.client = client;
+        this.tweetDao = tweetDao;
+    }
+
+    // Whether a page should be requested with trim_user. A refresh returns the tweets newer than
+    // the loaded ones, mostly by the authors just seen, so it is trimmed once any author is known.
+    // Other pages are only trimmed while nearly all of the last trimmed page's authors were known
+    public boolean shouldTrim(boolean refresh) {
+        if (UserMap.isEmpty()) {
+            return false;
+        }
+        return refresh || lastMissRate <= MAX_MISS_RATE;
+    }
+
+    // shares the complete users in tweets, and fills in the trimmed ones
+    public void hydrate(final List<Tweet> tweets, final Callback callback) {
+        final boolean trimmed = hasTrimmedUsers(tweets);
+        final List<Long> missing = remember(tweets);
+        if (missing.isEmpty()) {
+            if (trimmed) {
+                lastMissRate = 0;
+            }
+            callback.onHydrated();
+            return;
+        }
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<User> stored = tweetDao.users(missing);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (User user : stored) {
+                            UserMap.intern(user);
+                        }
+                        List<Long> stillMissing = remember(tweets);
+                        lastMissRate = (float) stillMissing.size() / countAuthors(tweets);
+                        if (stillMissing.isEmpty()) {
+                            callback.onHydrated();
+                        } else {
+                            lookup(tweets, stillMissing, callback);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void lookup(final List<Tweet> tweets, List<Long> ids, final Callback callback) {
+        client.lookupUsers(ids, new TextHttpResponseHandler() {
+            @Override
+            public void onSuccess(int statusCode, Headers headers, String response) {
+                try {
+                    JSONArray jsonArray = new JSONArray(response);
+                    for (int i = 0; i < jsonArray.length(); i++) {
+                        UserMap.intern(User.fromJson(jsonArray.getJSONObject(i)));
+                    }
+                } catch (JSONException e) {
+                    callback.onFailed(e);
+                    return;
+                }
+                // users that are suspended or deleted aren't returned
+                if (remember(tweets).isEmpty()) {
+                    callback.onHydrated();
+                } else {
+                    callback.onFailed(null);
+                }
+            }
+
+            @Override
+            public void onFailure(int statusCode, Headers headers, String response, Throwable throwable) {
+                callback.onFailed(throwable);
+            }
+        });
+    }
+
+    private static boolean hasTrimmedUsers(List<Tweet> tweets) {
+        for (Tweet tweet : tweets) {
+            if (tweet.user.isTrimmed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int countAuthors(List<Tweet> tweets) {
+        Set<Long> authors = new HashSet<>();
+        for (Tweet tweet : tweets) {
+            authors.add(tweet.userId);
+        }
+        return authors.size();
+    }
+
+    // replaces each tweet's user with the shared one; returns the ids of the trimmed users that
+    // aren't known yet
+    private List<Long> remember(List<Tweet> tweets) {
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Tweet tweet : tweets) {
+            tweet.user = UserMap.intern(tweet.user);
+            if (tweet.user.isTrimmed()) {
+                missing.add(tweet.userId);
+            }
+        }
+        return new ArrayList<>(missing);
+    }
+}
@@ -0,0 +1,15 @@
+package com.codepath.apps.restclienttemplate;
+
+import android.app.Application;
+
+/**
+ * Release version of the debugging tools in src/debug: there are none, so startup doesn't pay for
+ * them.
+ */
+public class DebugTools {
+
+    private DebugTools() {}
+
+    public static void init(Application application) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TwitterDateParserTest {
+
+    @Test
+    public void parsesUtc() {
+        assertEquals(1539202764000L, TwitterDateParser.parse("Wed Oct 10 20:19:24 +0000 2018"));
+        assertEquals(0L, TwitterDateParser.parse("Thu Jan 01 00:00:00 +0000 1970"));
+    }
+
+    @Test
+    public void appliesOffsets() {
+        assertEquals(1539202764000L, TwitterDateParser.parse("Wed Oct 10 15:19:24 -0500 2018"));
+        assertEquals(1539202764000L, TwitterDateParser.parse("Thu Oct 11 01:49:24 +0530 2018"));
+    }
+
+    @Test
+    public void negativeOffsetsCrossDayAndYear() {
+        assertEquals(1609459200000L, TwitterDateParser.parse("Thu Dec 31 19:00:00 -0500 2020"));
+        assertEquals(0L, TwitterDateParser.parse("Wed Dec 31 23:30:00 -0030 1969"));
+    }
+
+    @Test
+    public void leapDays() {
+        assertEquals(1709208000000L, TwitterDateParser.parse("Thu Feb 29 12:00:00 +0000 2024"));
+        // divisible by 400, so a leap year
+        assertEquals(951782400000L, TwitterDateParser.parse("Tue Feb 29 00:00:00 +0000 2000"));
+        // divisible by 100 but not 400, so not a leap year: March 1st follows February 28th
+        assertEquals(4107542399000L, TwitterDateParser.parse("Sun Feb 28 23:59:59 +0000 2100"));
+        assertEquals(4107542400000L, TwitterDateParser.parse("Mon Mar 01 00:00:00 +0000 2100"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNull() {
+        TwitterDateParser.parse(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongLength() {
+        TwitterDateParser.parse("2018-10-10T20:19:24Z");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownMonth() {
+        TwitterDateParser.parse("Wed Okt 10 20:19:24 +0000 2018");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingOffsetSign() {
+        TwitterDateParser.parse("Wed Oct 10 20:19:24 00000 2018");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonDigits() {
+        TwitterDateParser.parse("Wed Oct 1x 20:19:24 +0000 2018");
+    }
+}
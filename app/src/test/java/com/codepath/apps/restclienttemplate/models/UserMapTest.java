@@ -0,0 +1,69 @@
+package com.codepath.apps.restclienttemplate.models;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class UserMapTest {
+
+    @Before
+    public void setUp() {
+        UserMap.clear();
+    }
+
+    // a user decoded from a response, whose strings are never the same objects as another response's
+    private static User decoded(long id, String name, String screenName, String profileImageUrl) {
+        return new User(id, new String(name), new String(screenName), new String(profileImageUrl));
+    }
+
+    @Test
+    public void sharesUnchangedUser() {
+        User first = UserMap.intern(decoded(1, "Alice", "alice", "https://img/alice"));
+        User second = UserMap.intern(decoded(1, "Alice", "alice", "https://img/alice"));
+        assertSame(first, second);
+        assertSame(first, UserMap.get(1));
+    }
+
+    @Test
+    public void rebindsChangedUser() {
+        User old = UserMap.intern(decoded(1, "Alice", "alice", "https://img/alice"));
+        User changed = UserMap.intern(decoded(1, "Alice B.", "alice", "https://img/alice"));
+        assertNotSame(old, changed);
+        assertEquals("Alice B.", changed.name);
+        // the old user is left as it was for the tweets still pointing to it
+        assertEquals("Alice", old.name);
+        assertSame(changed, UserMap.get(1));
+        // unchanged strings stay shared
+        assertSame(old.screenName, changed.screenName);
+        assertSame(old.profileImageUrl, changed.profileImageUrl);
+    }
+
+    @Test
+    public void resolvesTrimmedUser() {
+        User trimmed = new User(1, null, null, null);
+        assertSame(trimmed, UserMap.intern(trimmed));
+        // an unknown trimmed user isn't stored
+        assertNull(UserMap.get(1));
+
+        User known = UserMap.intern(decoded(1, "Alice", "alice", "https://img/alice"));
+        assertSame(known, UserMap.intern(new User(1, null, null, null)));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        for (long id = 1; id <= 1000; id++) {
+            UserMap.intern(decoded(id, "User", "user" + id, "https://img/" + id));
+        }
+        // user 1 was just used, so user 2 is now the least recently used
+        User first = UserMap.get(1);
+        UserMap.intern(decoded(1001, "User", "user1001", "https://img/1001"));
+        assertSame(first, UserMap.get(1));
+        assertNull(UserMap.get(2));
+        assertEquals("user3", UserMap.get(3).screenName);
+        assertEquals("user1001", UserMap.get(1001).screenName);
+    }
+}
@@ -0,0 +1,67 @@
+package com.codepath.apps.restclienttemplate.network;
+
+import com.codepath.apps.restclienttemplate.models.PendingAction;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ActionQueueTest {
+
+    private static final long TWEET = 42;
+
+    private final List<PendingAction> pending = new ArrayList<>();
+
+    private PendingAction queue(long tweetId, String type) {
+        PendingAction action = new PendingAction(tweetId, type);
+        pending.add(action);
+        return action;
+    }
+
+    @Test
+    public void undoCancelsUnsentAction() {
+        PendingAction like = queue(TWEET, PendingAction.LIKE);
+        assertSame(like, ActionQueue.cancelledBy(pending, null, TWEET, PendingAction.UNLIKE));
+
+        pending.clear();
+        PendingAction retweet = queue(TWEET, PendingAction.RETWEET);
+        assertSame(retweet, ActionQueue.cancelledBy(pending, null, TWEET, PendingAction.UNRETWEET));
+    }
+
+    @Test
+    public void undoDoesNotCancelActionBeingSent() {
+        PendingAction like = queue(TWEET, PendingAction.LIKE);
+        assertNull(ActionQueue.cancelledBy(pending, like, TWEET, PendingAction.UNLIKE));
+    }
+
+    @Test
+    public void redoCancelsUnsentUndo() {
+        // like is being sent, so the unlike was queued; liking again takes back only the unlike
+        PendingAction like = queue(TWEET, PendingAction.LIKE);
+        PendingAction unlike = queue(TWEET, PendingAction.UNLIKE);
+        assertSame(unlike, ActionQueue.cancelledBy(pending, like, TWEET, PendingAction.LIKE));
+    }
+
+    @Test
+    public void otherKindIsNotCancelled() {
+        queue(TWEET, PendingAction.RETWEET);
+        assertNull(ActionQueue.cancelledBy(pending, null, TWEET, PendingAction.UNLIKE));
+        queue(TWEET, PendingAction.LIKE);
+        assertNull(ActionQueue.cancelledBy(pending, null, TWEET, PendingAction.LIKE));
+    }
+
+    @Test
+    public void otherTweetIsNotCancelled() {
+        queue(TWEET, PendingAction.LIKE);
+        assertNull(ActionQueue.cancelledBy(pending, null, TWEET + 1, PendingAction.UNLIKE));
+    }
+
+    @Test
+    public void nothingPending() {
+        assertNull(ActionQueue.cancelledBy(pending, null, TWEET, PendingAction.UNLIKE));
+    }
+}
@@ -0,0 +1,58 @@
+package com.codepath.apps.restclienttemplate.benchmark;
+
+import com.codepath.apps.restclienttemplate.adapters.RelativeTimeFormatter;
+import com.codepath.apps.restclienttemplate.models.TwitterDateParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and formats the timestamps of a whole page per operation: parse() is what decoding does
+ * for each tweet, and format() is what binding each row of the page does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DateFormattingBenchmark {
+
+    @Param({"25", "100", "200"})
+    public int pageSize;
+
+    private String[] createdAt;
+    private long[] createdAtMillis;
+    // one formatter for the whole run, like the adapter keeps one while the timeline is shown
+    private final RelativeTimeFormatter formatter = new RelativeTimeFormatter();
+
+    @Setup
+    public void setUp() {
+        createdAt = new String[pageSize];
+        createdAtMillis = new long[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            createdAt[i] = TimelineFixtures.createdAt(i);
+            createdAtMillis[i] = TwitterDateParser.parse(createdAt[i]);
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String date : createdAt) {
+            blackhole.consume(TwitterDateParser.parse(date));
+        }
+    }
+
+    @Benchmark
+    public void format(Blackhole blackhole) {
+        for (long time : createdAtMillis) {
+            blackhole.consume(formatter.format(time, TimelineFixtures.NOW));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.codepath.apps.restclienttemplate.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Builds home_timeline responses for the benchmarks from the sample objects in
+ * src/jmh/resources/fixtures, which have the fields and size of what statuses/home_timeline returns
+ * with tweet_mode=extended. A page has the given number of tweets, newest first, TWEET_INTERVAL_MS
+ * apart, written by NUM_AUTHORS different users. Text-only tweets have mentions, hashtags and a link;
+ * media tweets have two photos.
+ */
+final class TimelineFixtures {
+
+    static final String TEXT = "text";
+    static final String MEDIA = "media";
+
+    // a fixed "now", so the relative times (and the benchmark results) don't change between runs
+    static final long NOW = 1623000000000L;
+
+    private static final int NUM_AUTHORS = 40;
+    private static final long FIRST_ID = 1401000000000000000L;
+    private static final long FIRST_USER_ID = 120000000L;
+    // spreads a page of 200 tweets over a few days, so every kind of relative time label is used
+    private static final long TWEET_INTERVAL_MS = 17 * 60 * 1000;
+
+    private TimelineFixtures() {}
+
+    static String timeline(String kind, int size) throws IOException {
+        String tweetTemplate = read(kind.equals(MEDIA) ? "tweet_media.json" : "tweet_text.json");
+        String userTemplate = read("user.json");
+        StringBuilder response = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                response.append(',');
+            }
+            String userId = String.valueOf(FIRST_USER_ID + i % NUM_AUTHORS);
+            response.append(tweetTemplate
+                    .replace("{{user}}", userTemplate)
+                    .replace("{{user_id}}", userId)
+                    .replace("{{id}}", String.valueOf(FIRST_ID - i))
+                    .replace("{{media_id}}", String.valueOf(FIRST_ID - i + 7))
+                    .replace("{{created_at}}", createdAt(i))
+                    .replace("{{retweet_count}}", String.valueOf(i * 7 % 300))
+                    .replace("{{favorite_count}}", String.valueOf(i * 31 % 2000)));
+        }
+        return response.append(']').toString();
+    }
+
+    static String user() throws IOException {
+        return read("user.json").replace("{{user_id}}", String.valueOf(FIRST_USER_ID));
+    }
+
+    // the created_at of the i-th tweet of a page, in Twitter's format
+    static String createdAt(int i) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(NOW - 30 * 1000 - i * TWEET_INTERVAL_MS));
+    }
+
+    private static String read(String name) throws IOException {
+        InputStream in = TimelineFixtures.class.getResourceAsStream("/fixtures/" + name);
+        if (in == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            // the fixture files end with a newline
+            return new String(out.toByteArray(), StandardCharsets.UTF_8).trim();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.codepath.apps.restclienttemplate.benchmark;
+
+import com.codepath.apps.restclienttemplate.models.Tweet;
+import com.google.gson.stream.JsonReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a whole home_timeline response per operation, so the score is pages per second. Authors
+ * are shared through UserMap, which stays filled between operations just like it does while the
+ * app is running.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TweetDecodingBenchmark {
+
+    @Param({"25", "100", "200"})
+    public int pageSize;
+
+    @Param({TimelineFixtures.TEXT, TimelineFixtures.MEDIA})
+    public String kind;
+
+    private String response;
+
+    @Setup
+    public void setUp() throws IOException {
+        response = TimelineFixtures.timeline(kind, pageSize);
+    }
+
+    // what TweetDecoder does with every timeline response
+    @Benchmark
+    public List<Tweet> streaming() throws IOException {
+        return Tweet.fromJsonArray(new JsonReader(new StringReader(response)));
+    }
+
+    // the JSONObject based decoder, for comparison
+    @Benchmark
+    public List<Tweet> tree() throws JSONException {
+        return Tweet.fromJsonArray(new JSONArray(response));
+    }
+}
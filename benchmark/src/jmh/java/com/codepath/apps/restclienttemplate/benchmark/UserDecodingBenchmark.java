@@ -0,0 +1,45 @@
+package com.codepath.apps.restclienttemplate.benchmark;
+
+import com.codepath.apps.restclienttemplate.models.User;
+import com.google.gson.stream.JsonReader;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a single user object per operation, as embedded in every timeline tweet and returned on
+ * its own by verify_credentials and users/lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserDecodingBenchmark {
+
+    private String response;
+
+    @Setup
+    public void setUp() throws IOException {
+        response = TimelineFixtures.user();
+    }
+
+    @Benchmark
+    public User streaming() throws IOException {
+        return User.fromJson(new JsonReader(new StringReader(response)));
+    }
+
+    @Benchmark
+    public User tree() throws JSONException {
+        return User.fromJson(new JSONObject(response));
+    }
+}